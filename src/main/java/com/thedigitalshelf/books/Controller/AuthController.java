@@ -2,9 +2,12 @@ package com.thedigitalshelf.books.Controller;
 
 import com.thedigitalshelf.books.dto.AuthRequest;
 import com.thedigitalshelf.books.dto.AuthResponse;
+import com.thedigitalshelf.books.security.JwtAuthenticationFilter;
 import com.thedigitalshelf.books.service.AuthService;
+import io.jsonwebtoken.Claims;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -38,6 +41,24 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestAttribute(name = JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, required = false) Claims claims) {
+        if (claims == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("A valid token is required");
+        }
+        authService.logout(claims);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(@RequestAttribute(name = JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, required = false) Claims claims) {
+        if (claims == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("A valid token is required");
+        }
+        authService.logoutAll(claims.getSubject());
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/test")
     public ResponseEntity<String> test() {
         return ResponseEntity.ok("Auth endpoint is working!");
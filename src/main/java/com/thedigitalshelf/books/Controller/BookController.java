@@ -1,13 +1,32 @@
 package com.thedigitalshelf.books.Controller;
 
+import com.thedigitalshelf.books.analytics.ViewAnalyticsStore;
+import com.thedigitalshelf.books.analytics.ViewGranularity;
+import com.thedigitalshelf.books.dto.BookBatchRequest;
+import com.thedigitalshelf.books.dto.BookBulkPatchRequest;
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.dto.BookPatch;
 import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.recommendation.SimilarBooksEngine;
 import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.CatalogChangeFeed;
+import com.thedigitalshelf.books.service.RequestCoalescer;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -17,10 +36,33 @@ public class BookController {
 
     @Autowired
     private BookService bookService;
+
+    @Autowired
+    private RequestCoalescer coalescer;
+
+    @Autowired
+    private CatalogChangeFeed changeFeed;
+
+    @Autowired
+    private ViewAnalyticsStore viewAnalytics;
+
+    @Autowired
+    private SimilarBooksEngine similarBooks;
+
+    @Value("${books.batch.max-ids:100}")
+    private int maxBatchIds;
+
+    @Value("${books.bulk.max-ids:1000}")
+    private int maxBulkIds;
+
     @GetMapping
-    public ResponseEntity<List<Books>> getAllBooks() {
-        List<Books> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getAllBooks(BookListOptions options) {
+        try {
+            List<Books> books = bookService.getAllBooks(options);
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/keepalive")
@@ -35,22 +77,57 @@ public class BookController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/batch")
+    public ResponseEntity<?> getBooksByIds(@RequestParam List<Integer> ids) {
+        return batch(ids);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> getBooksByIds(@Valid @RequestBody BookBatchRequest request) {
+        return batch(request.getIds());
+    }
+
+    private ResponseEntity<?> batch(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest().body("At least one id is required");
+        }
+        if (ids.contains(null)) {
+            return ResponseEntity.badRequest().body("Ids must not be null");
+        }
+        if (ids.size() > maxBatchIds) {
+            return ResponseEntity.badRequest().body("At most " + maxBatchIds + " ids per request");
+        }
+        return ResponseEntity.ok(bookService.getBooksByIds(ids));
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<List<Books>> searchBooks(@RequestParam(required = false) String query) {
-        List<Books> books = bookService.searchBooks(query);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> searchBooks(@RequestParam(required = false) String query, BookListOptions options) {
+        try {
+            List<Books> books = bookService.searchBooks(query, options);
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/author/{author}")
-    public ResponseEntity<List<Books>> getBooksByAuthor(@PathVariable String author) {
-        List<Books> books = bookService.getBooksByAuthor(author);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getBooksByAuthor(@PathVariable String author, BookListOptions options) {
+        try {
+            List<Books> books = bookService.getBooksByAuthor(author, options);
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/rating/{minRating}")
-    public ResponseEntity<List<Books>> getBooksByRating(@PathVariable int minRating) {
-        List<Books> books = bookService.getBooksByRating(minRating);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getBooksByRating(@PathVariable int minRating, BookListOptions options) {
+        try {
+            List<Books> books = bookService.getBooksByRating(minRating, options);
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/authors")
@@ -71,10 +148,24 @@ public class BookController {
         return ResponseEntity.ok(total);
     }
 
+    @GetMapping("/stats/coalescing")
+    public ResponseEntity<Map<String, Long>> getCoalescingStats() {
+        return ResponseEntity.ok(coalescer.getStats());
+    }
+
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed.subscribe(lastEventId);
+    }
+
     @GetMapping("/featured")
-    public ResponseEntity<List<Books>> getFeaturedBooks() {
-        List<Books> featuredBooks = bookService.getFeaturedBooks();
-        return ResponseEntity.ok(featuredBooks);
+    public ResponseEntity<?> getFeaturedBooks(BookListOptions options) {
+        try {
+            List<Books> featuredBooks = bookService.getFeaturedBooks(options);
+            return ResponseEntity.ok(featuredBooks);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping
@@ -143,33 +234,128 @@ public class BookController {
                 }
                 
                 book.setId(id);
+                // Clients that don't send a version keep the previous last-writer-wins behaviour
+                if (book.getVersion() == null) {
+                    book.setVersion(existingBook.get().getVersion());
+                }
                 Books updatedBook = bookService.saveBook(book);
                 return ResponseEntity.ok(updatedBook);
             }
             return ResponseEntity.notFound().build();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Book was modified by another request");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error updating book: " + e.getMessage());
         }
     }
 
+    @PatchMapping("/{id}")
+    public ResponseEntity<?> patchBook(@PathVariable Integer id, @RequestBody BookPatch patch,
+                                       @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        if (patch.isEmpty()) {
+            return ResponseEntity.badRequest().body("No fields to update");
+        }
+        if (patch.getTitle() != null && patch.getTitle().trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("Title must not be blank");
+        }
+        if (patch.getVersion() == null && ifMatch != null) {
+            try {
+                patch.setVersion(Integer.valueOf(ifMatch.replace("W/", "").replace("\"", "").trim()));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().body("Invalid If-Match version: " + ifMatch);
+            }
+        }
+
+        int updated = bookService.patchBook(id, patch);
+        if (updated == 0) {
+            // Only the failure path pays for the extra lookup that tells the two cases apart
+            if (!bookService.existsById(id)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Book was modified by another request");
+        }
+        if (patch.getVersion() != null) {
+            return ResponseEntity.noContent().eTag(String.valueOf(patch.getVersion() + 1)).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @PatchMapping("/bulk")
+    public ResponseEntity<?> patchBooks(@Valid @RequestBody BookBulkPatchRequest request) {
+        BookPatch patch = request.getPatch();
+        if (patch.isEmpty()) {
+            return ResponseEntity.badRequest().body("No fields to update");
+        }
+        if (patch.getTitle() != null) {
+            return ResponseEntity.badRequest().body("Title cannot be bulk updated");
+        }
+        if (request.getIds().contains(null)) {
+            return ResponseEntity.badRequest().body("Ids must not be null");
+        }
+        if (request.getIds().size() > maxBulkIds) {
+            return ResponseEntity.badRequest().body("At most " + maxBulkIds + " ids per request");
+        }
+
+        int updated = bookService.patchBooks(request.getIds(), patch);
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("requested", request.getIds().size());
+        result.put("updated", updated);
+        return ResponseEntity.ok(result);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteBook(@PathVariable Integer id) {
-        Optional<Books> existingBook = bookService.getBookById(id);
-        if (existingBook.isPresent()) {
-            bookService.deleteBook(id);
+        if (bookService.deleteBook(id)) {
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
     }
 
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<Books>> getSimilarBooks(@PathVariable Integer id, @RequestParam(defaultValue = "6") int limit) {
+        List<Integer> ids = similarBooks.getSimilarIds(id, Math.max(0, limit));
+        if (ids.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(bookService.getBooksByIds(ids).getBooks());
+    }
+
+    @GetMapping("/{id}/views/history")
+    public ResponseEntity<?> getViewHistory(@PathVariable Integer id,
+                                            @RequestParam(required = false) Instant from,
+                                            @RequestParam(required = false) Instant to,
+                                            @RequestParam(defaultValue = "hour") String granularity) {
+        ViewGranularity resolution;
+        try {
+            resolution = ViewGranularity.valueOf(granularity.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Granularity must be one of minute, hour, day");
+        }
+
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : switch (resolution) {
+            case MINUTE -> end.minus(1, ChronoUnit.HOURS);
+            case HOUR -> end.minus(1, ChronoUnit.DAYS);
+            case DAY -> end.minus(30, ChronoUnit.DAYS);
+        };
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().body("'from' must be before 'to'");
+        }
+
+        try {
+            return ResponseEntity.ok(viewAnalytics.getHistory(id, resolution, start, end));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/{id}/views")
-    @Transactional
     public ResponseEntity<?> incrementViews(@PathVariable Integer id) {
-        Optional<Books> existingBook = bookService.getBookById(id);
-        if (existingBook.isEmpty()) {
+        // The UPDATE's row count doubles as the existence check
+        int updated = bookService.incrementViews(id);
+        if (updated == 0) {
             return ResponseEntity.notFound().build();
         }
-        int updated = bookService.incrementViews(id);
         return ResponseEntity.ok().body("views+=" + updated);
     }
 }
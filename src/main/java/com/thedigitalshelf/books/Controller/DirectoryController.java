@@ -0,0 +1,79 @@
+package com.thedigitalshelf.books.Controller;
+
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.dto.DirectoryPage;
+import com.thedigitalshelf.books.entity.DirectoryEntry;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.CatalogDirectory;
+import com.thedigitalshelf.books.service.CatalogDirectory.Dimension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*")
+public class DirectoryController {
+
+    @Autowired
+    private CatalogDirectory directory;
+
+    @Autowired
+    private BookService bookService;
+
+    @GetMapping("/authors")
+    public ResponseEntity<DirectoryPage> getAuthors(@RequestParam(required = false) String prefix,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(directory.page(Dimension.AUTHOR, prefix, after, limit));
+    }
+
+    @GetMapping("/authors/{id}")
+    public ResponseEntity<? extends DirectoryEntry> getAuthor(@PathVariable Integer id) {
+        return entry(Dimension.AUTHOR, id);
+    }
+
+    @GetMapping("/authors/{id}/books")
+    public ResponseEntity<?> getBooksByAuthor(@PathVariable Integer id, BookListOptions options) {
+        if (directory.find(Dimension.AUTHOR, id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(bookService.getBooksByAuthorId(id, options));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/categories")
+    public ResponseEntity<DirectoryPage> getCategories(@RequestParam(required = false) String prefix,
+                                                       @RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(directory.page(Dimension.CATEGORY, prefix, after, limit));
+    }
+
+    @GetMapping("/categories/{id}")
+    public ResponseEntity<? extends DirectoryEntry> getCategory(@PathVariable Integer id) {
+        return entry(Dimension.CATEGORY, id);
+    }
+
+    @GetMapping("/categories/{id}/books")
+    public ResponseEntity<?> getBooksByCategory(@PathVariable Integer id, BookListOptions options) {
+        if (directory.find(Dimension.CATEGORY, id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(bookService.getBooksByCategoryId(id, options));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private ResponseEntity<? extends DirectoryEntry> entry(Dimension dimension, Integer id) {
+        Optional<? extends DirectoryEntry> entry = directory.find(dimension, id);
+        return entry.<ResponseEntity<? extends DirectoryEntry>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
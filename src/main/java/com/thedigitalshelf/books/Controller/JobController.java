@@ -0,0 +1,76 @@
+package com.thedigitalshelf.books.Controller;
+
+import com.thedigitalshelf.books.dto.BookPatch;
+import com.thedigitalshelf.books.dto.CatalogJobRequest;
+import com.thedigitalshelf.books.entity.CatalogJob;
+import com.thedigitalshelf.books.service.CatalogJobRunner;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/jobs")
+@CrossOrigin(origins = "*")
+public class JobController {
+
+    private static final int MAX_LIST_LIMIT = 100;
+
+    @Autowired
+    private CatalogJobRunner jobRunner;
+
+    @PostMapping
+    public ResponseEntity<?> createJob(@Valid @RequestBody CatalogJobRequest request, Authentication authentication) {
+        BookPatch patch = request.getPatch();
+        if (request.getType() == CatalogJob.Type.PATCH) {
+            if (patch == null || patch.isEmpty()) {
+                return ResponseEntity.badRequest().body("No fields to update");
+            }
+            if (patch.getTitle() != null) {
+                return ResponseEntity.badRequest().body("Title cannot be bulk updated");
+            }
+            if (patch.getVersion() != null) {
+                return ResponseEntity.badRequest().body("Version cannot be used with bulk updates");
+            }
+        } else if (patch != null) {
+            return ResponseEntity.badRequest().body("Only PATCH jobs take a patch");
+        }
+        if (request.getType() == CatalogJob.Type.DELETE && !request.hasFilter()) {
+            return ResponseEntity.badRequest().body("DELETE jobs need an authorId, categoryId or featured filter");
+        }
+
+        CatalogJob job = jobRunner.submit(request.getType(), request.getAuthorId(), request.getCategoryId(),
+                request.getFeatured(), patch, authentication.getName());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/admin/jobs/" + job.getId()))
+                .body(jobRunner.find(job.getId()).orElse(job));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<CatalogJob>> getJobs(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(jobRunner.recent(Math.max(1, Math.min(limit, MAX_LIST_LIMIT))));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<CatalogJob> getJob(@PathVariable Long id) {
+        return jobRunner.find(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable Long id) {
+        if (jobRunner.find(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobRunner.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Job has already finished");
+        }
+        return ResponseEntity.ok(jobRunner.find(id).orElseThrow());
+    }
+}
@@ -0,0 +1,111 @@
+package com.thedigitalshelf.books.Controller;
+
+import com.thedigitalshelf.books.dto.BookBatchRequest;
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.ShelfService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/shelf")
+@CrossOrigin(origins = "*")
+public class ShelfController {
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Value("${books.batch.max-ids:100}")
+    private int maxBatchIds;
+
+    @GetMapping
+    public ResponseEntity<?> getShelf(Authentication authentication) {
+        Long userId = shelfService.resolveUserId(authentication.getName());
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        List<Integer> ids = Arrays.stream(shelfService.getBookIds(userId)).boxed().toList();
+        if (ids.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        BookBatchResponse response = bookService.getBooksByIds(ids);
+        // Books deleted since they were shelved are dropped lazily
+        if (!response.getMissing().isEmpty()) {
+            shelfService.removeAll(userId, response.getMissing());
+        }
+        return ResponseEntity.ok(response.getBooks());
+    }
+
+    @GetMapping("/ids")
+    public ResponseEntity<?> getShelfIds(Authentication authentication) {
+        Long userId = shelfService.resolveUserId(authentication.getName());
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(shelfService.getBookIds(userId));
+    }
+
+    @PutMapping("/{bookId}")
+    public ResponseEntity<?> addToShelf(@PathVariable int bookId, Authentication authentication) {
+        Long userId = shelfService.resolveUserId(authentication.getName());
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!bookService.existsById(bookId)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            boolean added = shelfService.add(userId, bookId);
+            return added ? ResponseEntity.status(HttpStatus.CREATED).build() : ResponseEntity.noContent().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{bookId}")
+    public ResponseEntity<?> removeFromShelf(@PathVariable int bookId, Authentication authentication) {
+        Long userId = shelfService.resolveUserId(authentication.getName());
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return shelfService.remove(userId, bookId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/contains")
+    public ResponseEntity<?> contains(@RequestParam List<Integer> ids, Authentication authentication) {
+        return contains(ids, authentication.getName());
+    }
+
+    @PostMapping("/contains")
+    public ResponseEntity<?> contains(@Valid @RequestBody BookBatchRequest request, Authentication authentication) {
+        return contains(request.getIds(), authentication.getName());
+    }
+
+    private ResponseEntity<?> contains(List<Integer> ids, String username) {
+        Long userId = shelfService.resolveUserId(username);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest().body("At least one id is required");
+        }
+        if (ids.contains(null)) {
+            return ResponseEntity.badRequest().body("Ids must not be null");
+        }
+        if (ids.size() > maxBatchIds) {
+            return ResponseEntity.badRequest().body("At most " + maxBatchIds + " ids per request");
+        }
+        return ResponseEntity.ok(shelfService.contains(userId, ids));
+    }
+}
@@ -0,0 +1,381 @@
+package com.thedigitalshelf.books.analytics;
+
+import com.thedigitalshelf.books.dto.ViewHistoryPoint;
+import com.thedigitalshelf.books.entity.BookViewRollup;
+import com.thedigitalshelf.books.entity.ViewRollupCheckpoint;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.journal.CatalogJournal;
+import com.thedigitalshelf.books.repository.BookViewRollupRepository;
+import com.thedigitalshelf.books.repository.ViewRollupCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-book view counts in minute buckets. Each book that has been viewed keeps a fixed ring of
+ * minute slots, so recording is O(1) and memory per book is bounded; completed minutes are
+ * periodically rolled up into hourly and daily rows of book_view_rollups in one batch.
+ * Minutes not yet rolled up when the process stopped are recovered from the catalog journal.
+ *
+ * A flush only holds the flush lock while it snapshots the completed minutes and moves the
+ * rollup boundary, so recording never waits on the database; a view whose minute is already
+ * past the boundary is held separately and added by the next flush. The snapshot is persisted
+ * outside that lock and kept (and shown in history) until it commits, so a failed flush is
+ * retried rather than lost. Books without a view inside the minute ring are dropped from memory.
+ * Each instance rolls up only its own views and keeps its own checkpoint, keyed by
+ * books.analytics.instance-id.
+ */
+@Service
+public class ViewAnalyticsStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewAnalyticsStore.class);
+
+    private static final String UPDATE_ROLLUP =
+            "UPDATE book_view_rollups SET views = views + ? WHERE book_id = ? AND granularity = ? AND bucket_start = ?";
+    private static final String INSERT_ROLLUP =
+            "INSERT INTO book_view_rollups (book_id, granularity, bucket_start, views) VALUES (?, ?, ?, ?)";
+
+    @Value("${books.analytics.minute-slots:180}")
+    private int minuteSlots;
+
+    @Value("${books.analytics.flush-interval-ms:60000}")
+    private long flushIntervalMs;
+
+    @Value("${books.analytics.max-points:1500}")
+    private int maxPoints;
+
+    // Must stay the same across restarts for journal recovery to resume from this instance's checkpoint
+    @Value("${books.analytics.instance-id:${books.invalidation.instance-id:}}")
+    private String instanceId;
+
+    @Autowired
+    private CatalogJournal journal;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BookViewRollupRepository rollupRepository;
+
+    @Autowired
+    private ViewRollupCheckpointRepository checkpointRepository;
+
+    private final ConcurrentHashMap<Integer, MinuteSeries> series = new ConcurrentHashMap<>();
+    // Views that arrived after their minute was rolled up
+    private final ConcurrentHashMap<BookMinute, Long> late = new ConcurrentHashMap<>();
+    // Guards the in-memory boundary; held only for snapshots, never across database work
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    // Held by history reads and by flushes while they persist, so a snapshot is counted exactly once
+    private final ReadWriteLock persistLock = new ReentrantReadWriteLock();
+    private final Object flushing = new Object();
+    private volatile long lastFlushedMinute;
+    // Completed minutes taken from memory but not yet committed
+    private Pending pending;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void start() {
+        if (instanceId.isBlank()) {
+            instanceId = "default";
+        }
+        long now = currentMinute();
+        long checkpoint = checkpointRepository.findById(instanceId)
+                .map(ViewRollupCheckpoint::getLastFlushedMinute)
+                .orElse(now - 1);
+        // Anything older than the ring can't be held in memory any more
+        lastFlushedMinute = Math.max(checkpoint, now - minuteSlots);
+
+        long[] recovered = {0};
+        journal.replay(0, entry -> {
+            long minute = entry.timestamp() / 60_000;
+            if (entry.type() == CatalogChangeEvent.Type.VIEWED && minute > lastFlushedMinute && minute <= now) {
+                seriesFor(entry.bookId()).add(minute, entry.value(), minuteSlots);
+                recovered[0] += entry.value();
+            }
+        });
+        if (recovered[0] > 0) {
+            log.info("Recovered {} un-rolled-up views from the catalog journal", recovered[0]);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "view-analytics-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::safeFlush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        safeFlush();
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeEvent.Type.VIEWED && event.getType() != CatalogChangeEvent.Type.DELETED) {
+            return;
+        }
+        flushLock.readLock().lock();
+        try {
+            int bookId = event.getBookId();
+            if (event.getType() == CatalogChangeEvent.Type.DELETED) {
+                series.remove(bookId);
+                late.keySet().removeIf(key -> key.bookId() == bookId);
+                return;
+            }
+            long minute = event.getTimestamp() / 60_000;
+            if (minute > lastFlushedMinute) {
+                seriesFor(bookId).add(minute, 1, minuteSlots);
+            } else {
+                late.merge(new BookMinute(bookId, minute), 1L, Long::sum);
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Rolls every completed minute since the last flush into hourly and daily rows
+    public void flush() {
+        synchronized (flushing) {
+            Pending batch = snapshot();
+            if (batch == null) {
+                return;
+            }
+
+            Map<RollupKey, Long> rollups = new HashMap<>();
+            batch.counts.forEach((bookId, minutes) -> minutes.forEach((minute, count) -> addRollups(rollups, bookId, minute, count)));
+            persistLock.writeLock().lock();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    persist(rollups);
+                    if (jdbcTemplate.update("UPDATE view_rollup_checkpoints SET last_flushed_minute = ? WHERE instance_id = ?",
+                            batch.target, instanceId) == 0) {
+                        jdbcTemplate.update("INSERT INTO view_rollup_checkpoints (instance_id, last_flushed_minute) VALUES (?, ?)",
+                                instanceId, batch.target);
+                    }
+                });
+                pending = null;
+            } finally {
+                persistLock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Moves completed minutes and late views into the pending batch and drops idle books
+    private Pending snapshot() {
+        flushLock.writeLock().lock();
+        try {
+            long from = lastFlushedMinute;
+            long now = currentMinute();
+            long target = Math.max(from, now - 1);
+            if (target == from && late.isEmpty() && pending == null) {
+                return null;
+            }
+
+            // A previous batch that failed to commit is retried together with this one
+            Pending batch = pending != null ? pending : new Pending();
+            batch.target = target;
+            late.forEach((key, count) -> batch.add(key.bookId(), key.minute(), count));
+            late.clear();
+            series.entrySet().removeIf(entry -> {
+                MinuteSeries minutes = entry.getValue();
+                for (long minute = from + 1; minute <= target; minute++) {
+                    int count = minutes.get(minute, minuteSlots);
+                    if (count > 0) {
+                        batch.add(entry.getKey(), minute, count);
+                    }
+                }
+                return minutes.latest() <= now - minuteSlots;
+            });
+            lastFlushedMinute = target;
+            pending = batch;
+            return batch;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    public List<ViewHistoryPoint> getHistory(int bookId, ViewGranularity granularity, Instant from, Instant to) {
+        long fromBucket = granularity.bucketOf(from.getEpochSecond() / 60);
+        // The bucket containing 'to' is included
+        long toMinute = to.getEpochSecond() / 60 + 1;
+        long points = (toMinute - fromBucket + granularity.minutes() - 1) / granularity.minutes();
+        if (points <= 0) {
+            return List.of();
+        }
+        if (points > maxPoints) {
+            throw new IllegalArgumentException("Range too large: at most " + maxPoints + " " + granularity.name().toLowerCase() + " buckets");
+        }
+
+        Map<Long, Long> buckets = new LinkedHashMap<>();
+        for (long bucket = fromBucket; bucket < toMinute; bucket += granularity.minutes()) {
+            buckets.put(bucket, 0L);
+        }
+
+        persistLock.readLock().lock();
+        try {
+            if (granularity != ViewGranularity.MINUTE) {
+                for (BookViewRollup rollup : rollupRepository
+                        .findByBookIdAndGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStart(
+                                bookId, granularity, Instant.ofEpochSecond(fromBucket * 60), Instant.ofEpochSecond(toMinute * 60))) {
+                    buckets.computeIfPresent(rollup.getBucketStart().getEpochSecond() / 60, (k, v) -> v + rollup.getViews());
+                }
+            }
+
+            flushLock.readLock().lock();
+            try {
+                long unflushedFrom = lastFlushedMinute + 1;
+                if (granularity == ViewGranularity.MINUTE) {
+                    // Minute resolution only exists in memory
+                    unflushedFrom = currentMinute() - minuteSlots + 1;
+                } else if (pending != null) {
+                    pending.counts.getOrDefault(bookId, Map.of()).forEach((minute, count) -> {
+                        if (minute >= fromBucket && minute < toMinute) {
+                            buckets.computeIfPresent(granularity.bucketOf(minute), (k, v) -> v + count);
+                        }
+                    });
+                }
+
+                MinuteSeries minutes = series.get(bookId);
+                if (minutes != null) {
+                    for (long minute = Math.max(fromBucket, unflushedFrom); minute < toMinute; minute++) {
+                        int count = minutes.get(minute, minuteSlots);
+                        if (count > 0) {
+                            buckets.computeIfPresent(granularity.bucketOf(minute), (k, v) -> v + count);
+                        }
+                    }
+                }
+            } finally {
+                flushLock.readLock().unlock();
+            }
+        } finally {
+            persistLock.readLock().unlock();
+        }
+
+        List<ViewHistoryPoint> history = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, views) -> history.add(new ViewHistoryPoint(Instant.ofEpochSecond(bucket * 60), views)));
+        return history;
+    }
+
+    private static void addRollups(Map<RollupKey, Long> rollups, int bookId, long minute, long count) {
+        rollups.merge(new RollupKey(bookId, ViewGranularity.HOUR, ViewGranularity.HOUR.bucketOf(minute)), count, Long::sum);
+        rollups.merge(new RollupKey(bookId, ViewGranularity.DAY, ViewGranularity.DAY.bucketOf(minute)), count, Long::sum);
+    }
+
+    private void persist(Map<RollupKey, Long> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        List<RollupKey> keys = new ArrayList<>(rollups.keySet());
+        List<Object[]> updates = new ArrayList<>(keys.size());
+        for (RollupKey key : keys) {
+            updates.add(new Object[]{rollups.get(key), key.bookId(), key.granularity().name(), key.bucketStart()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_ROLLUP, updates);
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (updated[i] == 0) {
+                RollupKey key = keys.get(i);
+                inserts.add(new Object[]{key.bookId(), key.granularity().name(), key.bucketStart(), rollups.get(key)});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ROLLUP, inserts);
+        }
+    }
+
+    private void safeFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("View analytics rollup failed: {}", e.getMessage());
+        }
+    }
+
+    private MinuteSeries seriesFor(int bookId) {
+        return series.computeIfAbsent(bookId, id -> new MinuteSeries(minuteSlots));
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    private record BookMinute(int bookId, long minute) {
+    }
+
+    private static final class Pending {
+        private final Map<Integer, Map<Long, Long>> counts = new HashMap<>();
+        private long target;
+
+        void add(int bookId, long minute, long count) {
+            counts.computeIfAbsent(bookId, id -> new HashMap<>()).merge(minute, count, Long::sum);
+        }
+    }
+
+    private record RollupKey(int bookId, ViewGranularity granularity, long bucketMinute) {
+
+        Object bucketStart() {
+            return Instant.ofEpochSecond(bucketMinute * 60).atOffset(ZoneOffset.UTC);
+        }
+    }
+
+    // Ring of minute slots; a slot is reused once its minute falls out of the window
+    private static final class MinuteSeries {
+        private final int[] minutes;
+        private final int[] counts;
+        private long latest;
+
+        private MinuteSeries(int slots) {
+            this.minutes = new int[slots];
+            this.counts = new int[slots];
+        }
+
+        synchronized void add(long epochMinute, int views, int slots) {
+            int slot = (int) (epochMinute % slots);
+            if (minutes[slot] > (int) epochMinute) {
+                return;
+            }
+            if (minutes[slot] != (int) epochMinute) {
+                minutes[slot] = (int) epochMinute;
+                counts[slot] = 0;
+            }
+            counts[slot] += views;
+            latest = Math.max(latest, epochMinute);
+        }
+
+        synchronized long latest() {
+            return latest;
+        }
+
+        synchronized int get(long epochMinute, int slots) {
+            int slot = (int) (epochMinute % slots);
+            return minutes[slot] == (int) epochMinute ? counts[slot] : 0;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.thedigitalshelf.books.analytics;
+
+import java.time.Duration;
+
+public enum ViewGranularity {
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1)),
+    DAY(Duration.ofDays(1));
+
+    private final Duration size;
+
+    ViewGranularity(Duration size) {
+        this.size = size;
+    }
+
+    public long minutes() {
+        return size.toMinutes();
+    }
+
+    // Start (in epoch minutes) of the bucket containing the given minute
+    public long bucketOf(long epochMinute) {
+        return epochMinute - Math.floorMod(epochMinute, minutes());
+    }
+}
@@ -0,0 +1,280 @@
+package com.thedigitalshelf.books.cluster;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import com.thedigitalshelf.books.event.ShelfChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcasts this instance's catalog and shelf changes to the other instances and republishes
+ * theirs locally as remote {@link CatalogChangeEvent}s and {@link ShelfChangeEvent}s, so
+ * in-process state built from the database stays current everywhere.
+ *
+ * Messages are "origin:version:type:id", where the version counts this instance's changes and
+ * the id is a book id, or a user id for shelf ('S') messages.
+ * Receivers track the last version per origin; a skipped version, a version ahead of the last
+ * change in a heartbeat, or a reconnect of the transport means something was missed, and a
+ * {@link CatalogRefreshEvent} asks local caches to rebuild from the database.
+ */
+@Component
+@ConditionalOnExpression("'${books.invalidation.transport:none}' != 'none'")
+public class InvalidationBus implements InvalidationTransport.Receiver {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private static final char HEARTBEAT = 'H';
+    private static final char SHELF = 'S';
+
+    @Value("${books.invalidation.transport:none}")
+    private String transportName;
+
+    @Value("${books.invalidation.channel:catalog_changes}")
+    private String channel;
+
+    @Value("${books.invalidation.instance-id:}")
+    private String instanceId;
+
+    @Value("${books.invalidation.queue-size:1024}")
+    private int queueSize;
+
+    @Value("${books.invalidation.heartbeat-ms:5000}")
+    private long heartbeatMs;
+
+    @Value("${books.invalidation.listen-timeout-ms:500}")
+    private int listenTimeoutMs;
+
+    @Value("${books.invalidation.reconnect-delay-ms:2000}")
+    private long reconnectDelayMs;
+
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+
+    @Value("${spring.datasource.username:}")
+    private String datasourceUsername;
+
+    @Value("${spring.datasource.password:}")
+    private String datasourcePassword;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<String, Peer> peers = new ConcurrentHashMap<>();
+    private BlockingQueue<String> outbox;
+    private InvalidationTransport transport;
+    private long version;
+    private volatile long baselineUntil;
+    private volatile boolean running;
+    private Thread sender;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void start() {
+        if (instanceId.isBlank()) {
+            instanceId = UUID.randomUUID().toString().substring(0, 8);
+        } else if (instanceId.indexOf(':') >= 0) {
+            throw new IllegalStateException("books.invalidation.instance-id must not contain ':'");
+        }
+        transport = switch (transportName.trim().toLowerCase(Locale.ROOT)) {
+            case "loopback" -> new LoopbackTransport(channel);
+            case "postgres" -> new PostgresNotifyTransport(datasourceUrl, datasourceUsername, datasourcePassword,
+                    channel, listenTimeoutMs, reconnectDelayMs);
+            default -> throw new IllegalStateException("books.invalidation.transport must be 'none', 'loopback' or 'postgres', not '" + transportName + "'");
+        };
+
+        outbox = new ArrayBlockingQueue<>(queueSize);
+        baselineUntil = System.currentTimeMillis() + 2 * heartbeatMs;
+        running = true;
+        transport.start(this);
+        sender = new Thread(this::sendLoop, "invalidation-sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "invalidation-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Announce version 0 right away so peers know this origin started from scratch
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+        log.info("Invalidation bus started on {} channel '{}' as instance {}", transportName, channel, instanceId);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        scheduler.shutdownNow();
+        running = false;
+        sender.interrupt();
+        sender.join(TimeUnit.SECONDS.toMillis(5));
+        transport.stop();
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        // Views are counted per instance and flushed to the database; only row changes invalidate
+        if (event.isRemote() || event.getType() == CatalogChangeEvent.Type.VIEWED) {
+            return;
+        }
+        enqueue(event.getType().name().charAt(0), event.getBookId());
+    }
+
+    @EventListener
+    public void onShelfChange(ShelfChangeEvent event) {
+        if (!event.isRemote()) {
+            enqueue(SHELF, event.getUserId());
+        }
+    }
+
+    @Override
+    public void message(String message) {
+        try {
+            receive(message);
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed invalidation message '{}': {}", message, e.getMessage());
+        }
+    }
+
+    @Override
+    public void lost(String reason) {
+        synchronized (this) {
+            peers.clear();
+            baselineUntil = System.currentTimeMillis() + 2 * heartbeatMs;
+        }
+        refresh(reason);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public int getPeerCount() {
+        return peers.size();
+    }
+
+    private void enqueue(char type, long id) {
+        synchronized (this) {
+            long next = type == HEARTBEAT ? version : ++version;
+            // A full outbox drops the message but keeps its version, so peers see the gap and refresh
+            if (!outbox.offer(instanceId + ':' + next + ':' + type + ':' + id)) {
+                log.debug("Invalidation outbox full; dropped version {}", next);
+            }
+        }
+    }
+
+    private void sendLoop() {
+        while (running) {
+            String message;
+            try {
+                message = outbox.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                transport.send(message);
+            } catch (Exception e) {
+                log.warn("Failed to send invalidation {}: {}", message, e.getMessage());
+            }
+        }
+    }
+
+    private void receive(String message) {
+        String[] parts = message.split(":", 4);
+        if (parts.length != 4 || parts[2].length() != 1) {
+            throw new IllegalArgumentException("expected origin:version:type:id");
+        }
+        String origin = parts[0];
+        if (origin.equals(instanceId)) {
+            return;
+        }
+        long received = Long.parseLong(parts[1]);
+        char type = parts[2].charAt(0);
+        long id = Long.parseLong(parts[3]);
+        long now = System.currentTimeMillis();
+
+        boolean gap;
+        synchronized (this) {
+            Peer peer = peers.get(origin);
+            if (peer == null) {
+                peer = new Peer();
+                // Right after start or a reconnect the first message sets the baseline; later, an unknown
+                // origin past version 0 has sent changes we never saw
+                long baseline = type == HEARTBEAT ? received : received - 1;
+                peer.version = now < baselineUntil ? baseline : 0;
+                peers.put(origin, peer);
+            }
+            peer.lastSeen = now;
+            if (type == HEARTBEAT) {
+                gap = received > peer.version;
+            } else if (received <= peer.version) {
+                // Duplicate, or already covered by a refresh
+                return;
+            } else {
+                gap = received > peer.version + 1;
+            }
+            peer.version = Math.max(peer.version, received);
+        }
+
+        if (gap) {
+            refresh("missed changes from " + origin);
+        }
+        if (type == SHELF) {
+            eventPublisher.publishEvent(new ShelfChangeEvent(id, origin));
+        } else if (type != HEARTBEAT) {
+            eventPublisher.publishEvent(new CatalogChangeEvent(typeOf(type), Math.toIntExact(id), now, origin));
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            enqueue(HEARTBEAT, 0);
+            long cutoff = System.currentTimeMillis() - 3 * heartbeatMs;
+            for (Iterator<Map.Entry<String, Peer>> it = peers.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Peer> entry = it.next();
+                if (entry.getValue().lastSeen < cutoff) {
+                    log.info("Invalidation peer {} went quiet", entry.getKey());
+                    it.remove();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Invalidation heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private void refresh(String reason) {
+        log.info("Refreshing local catalog state: {}", reason);
+        eventPublisher.publishEvent(new CatalogRefreshEvent(reason));
+    }
+
+    private static CatalogChangeEvent.Type typeOf(char type) {
+        return switch (type) {
+            case 'C' -> CatalogChangeEvent.Type.CREATED;
+            case 'U' -> CatalogChangeEvent.Type.UPDATED;
+            case 'D' -> CatalogChangeEvent.Type.DELETED;
+            default -> throw new IllegalArgumentException("unknown type '" + type + "'");
+        };
+    }
+
+    private static final class Peer {
+        private long version;
+        private long lastSeen;
+    }
+}
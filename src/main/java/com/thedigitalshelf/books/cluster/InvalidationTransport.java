@@ -0,0 +1,23 @@
+package com.thedigitalshelf.books.cluster;
+
+/**
+ * Carries invalidation messages between instances. Delivery is best effort: messages may be
+ * lost, and the bus finds out from version gaps. Every instance also receives its own messages.
+ */
+public interface InvalidationTransport {
+
+    void start(Receiver receiver);
+
+    // Called from the bus's single sender thread
+    void send(String message) throws Exception;
+
+    void stop();
+
+    interface Receiver {
+
+        void message(String message);
+
+        // The transport was disconnected and anything sent meanwhile is gone
+        void lost(String reason);
+    }
+}
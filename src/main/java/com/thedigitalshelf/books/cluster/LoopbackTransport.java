@@ -0,0 +1,43 @@
+package com.thedigitalshelf.books.cluster;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-JVM transport: every bus on the same channel in this JVM receives the message synchronously. For tests and single-node setups.
+public class LoopbackTransport implements InvalidationTransport {
+
+    private static final ConcurrentHashMap<String, Set<Receiver>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private Receiver receiver;
+
+    public LoopbackTransport(String channel) {
+        this.channel = channel;
+    }
+
+    // Delivers a message as if another instance had sent it
+    public static void deliver(String channel, String message) {
+        for (Receiver receiver : CHANNELS.getOrDefault(channel, Set.of())) {
+            receiver.message(message);
+        }
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, c -> ConcurrentHashMap.newKeySet()).add(receiver);
+    }
+
+    @Override
+    public void send(String message) {
+        deliver(channel, message);
+    }
+
+    @Override
+    public void stop() {
+        Set<Receiver> receivers = CHANNELS.get(channel);
+        if (receivers != null && receiver != null) {
+            receivers.remove(receiver);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.thedigitalshelf.books.cluster;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LISTEN/NOTIFY on the primary database. Listening and sending each use their own long-lived
+ * connection outside the pool, so a busy pool never delays invalidations. After a dropped
+ * listening connection the receiver is told that messages were lost and the thread reconnects.
+ */
+public class PostgresNotifyTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresNotifyTransport.class);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String channel;
+    private final int listenTimeoutMs;
+    private final long reconnectDelayMs;
+
+    private volatile boolean running;
+    private Thread listener;
+    private Connection listening;
+    private Connection sending;
+
+    public PostgresNotifyTransport(String url, String username, String password, String channel,
+                                   int listenTimeoutMs, long reconnectDelayMs) {
+        if (!channel.matches("[a-z_][a-z0-9_]{0,62}")) {
+            throw new IllegalStateException("books.invalidation.channel must be a lower-case SQL identifier, not '" + channel + "'");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.channel = channel;
+        this.listenTimeoutMs = listenTimeoutMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        running = true;
+        listener = new Thread(() -> listen(receiver), "invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void send(String message) throws SQLException {
+        try {
+            if (sending == null || sending.isClosed()) {
+                sending = DriverManager.getConnection(url, username, password);
+            }
+            try (PreparedStatement statement = sending.prepareStatement("SELECT pg_notify(?, ?)")) {
+                statement.setString(1, channel);
+                statement.setString(2, message);
+                statement.execute();
+            }
+        } catch (SQLException e) {
+            closeQuietly(sending);
+            sending = null;
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        closeQuietly(sending);
+    }
+
+    private void listen(Receiver receiver) {
+        boolean connectedBefore = false;
+        while (running) {
+            try {
+                listening = DriverManager.getConnection(url, username, password);
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    log.info("Invalidation listener reconnected");
+                    receiver.lost("listener reconnected");
+                }
+                connectedBefore = true;
+                PGConnection notifications = listening.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] received = notifications.getNotifications(listenTimeoutMs);
+                    if (received != null) {
+                        for (PGNotification notification : received) {
+                            receiver.message(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Invalidation listener lost its connection: {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Invalidation listener failed", e);
+            } finally {
+                closeQuietly(listening);
+            }
+            if (running) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(reconnectDelayMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Already broken
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.thedigitalshelf.books.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+// R2DBC access for the /api/v2 read API. The pool is deliberately not a bean: a ConnectionFactory
+// bean makes Boot back off the JDBC DataSource, and its R2DBC auto-configuration (excluded in
+// application.properties) would register a second transaction manager next to the JPA one.
+@Configuration
+@ConditionalOnProperty(name = "books.reactive.enabled", havingValue = "true")
+public class ReactiveCatalogConfig {
+
+    private ConnectionPool pool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(@Value("${books.reactive.r2dbc-url:}") String url,
+                                                 @Value("${books.reactive.username:${spring.datasource.username:}}") String username,
+                                                 @Value("${books.reactive.password:${spring.datasource.password:}}") String password,
+                                                 @Value("${books.reactive.max-connections:20}") int maxConnections,
+                                                 @Value("${books.sharding.enabled:false}") boolean sharded) {
+        if (sharded) {
+            throw new IllegalStateException("books.reactive.enabled reads a single database and can't be combined with books.sharding.enabled");
+        }
+        if (url.isBlank()) {
+            throw new IllegalStateException("books.reactive.r2dbc-url must be set when books.reactive.enabled=true");
+        }
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isBlank()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .maxSize(maxConnections)
+                .build());
+        return DatabaseClient.create(pool);
+    }
+
+    @PreDestroy
+    void close() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.thedigitalshelf.books.config;
+
+import com.thedigitalshelf.books.sharding.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "books.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    // Shard 0 is the regular spring.datasource and keeps every non-book table; the others only hold books.
+    // Every shard gets its own pool with the spring.datasource.hikari.* settings; closing the routing
+    // DataSource closes them all.
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${books.sharding.additional-urls:}") List<String> additionalUrls) {
+        Map<Object, Object> shards = new HashMap<>();
+        DataSource primary = pool(properties, environment, null, 0);
+        shards.put(0, primary);
+        for (String url : additionalUrls) {
+            if (!url.isBlank()) {
+                shards.put(shards.size(), pool(properties, environment, url.trim(), shards.size()));
+            }
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(shards);
+        routing.setDefaultTargetDataSource(primary);
+        return routing;
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String url, int shard) {
+        var builder = properties.initializeDataSourceBuilder().type(HikariDataSource.class);
+        if (url != null) {
+            builder.url(url);
+        }
+        HikariDataSource pool = builder.build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName((pool.getPoolName() != null ? pool.getPoolName() : "books") + "-shard-" + shard);
+        return pool;
+    }
+}
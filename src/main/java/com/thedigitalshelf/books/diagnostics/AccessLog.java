@@ -0,0 +1,292 @@
+package com.thedigitalshelf.books.diagnostics;
+
+import com.thedigitalshelf.books.security.JwtAuthenticationFilter;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log. Request threads only copy a handful of fields into a slot of the
+ * {@link AccessLogRing}; a background writer turns the slots into one JSON line each on the
+ * "com.thedigitalshelf.books.access" logger. Requests are sampled per route (first matching rule
+ * in books.access-log.route-sample-rates, otherwise books.access-log.sample-rate), except slow
+ * requests and server errors, which are always kept together with their query string and SQL.
+ */
+@Component
+@ConditionalOnProperty(name = "books.access-log.enabled", havingValue = "true", matchIfMissing = true)
+public class AccessLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLog.class);
+    private static final Logger access = LoggerFactory.getLogger("com.thedigitalshelf.books.access");
+
+    private static final int DRAIN_BATCH = 1024;
+    private static final int MAX_CACHED_ROUTES = 1000;
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Value("${books.access-log.capacity:8192}")
+    private int capacity;
+
+    @Value("${books.access-log.sample-rate:1.0}")
+    private double sampleRate;
+
+    // Entries like "GET /api/books/{id}=0.1" or "/api/books/stats/**=0"
+    @Value("${books.access-log.route-sample-rates:}")
+    private List<String> routeSampleRates;
+
+    @Value("${books.access-log.slow-threshold-ms:1000}")
+    private long slowThresholdMs;
+
+    @Value("${books.access-log.drain-interval-ms:100}")
+    private long drainIntervalMs;
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final List<RouteRule> rules = new ArrayList<>();
+    // "METHOD route" -> sample rate, so the patterns are matched once per route
+    private final ConcurrentHashMap<String, Double> rates = new ConcurrentHashMap<>();
+    private final LongAdder sampledOut = new LongAdder();
+    private final StringBuilder line = new StringBuilder(256);
+
+    private AccessLogRing ring;
+    private long slowThresholdNanos;
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    void start() {
+        for (String entry : routeSampleRates) {
+            if (!entry.isBlank()) {
+                rules.add(RouteRule.parse(entry.trim()));
+            }
+        }
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        ring = new AccessLogRing(capacity);
+        running = true;
+        writer = new Thread(this::drainLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public void record(HttpServletRequest request, int status, long latencyNanos) {
+        String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (route == null) {
+            route = request.getRequestURI();
+        }
+        String method = request.getMethod();
+        boolean slow = latencyNanos >= slowThresholdNanos;
+        boolean detailed = slow || status >= 500;
+        if (!detailed && !sampled(method, route)) {
+            sampledOut.increment();
+            return;
+        }
+
+        AccessLogEvent event = ring.claim();
+        if (event == null) {
+            return;
+        }
+        try {
+            event.setTimestamp(System.currentTimeMillis());
+            event.setMethod(method);
+            event.setRoute(route);
+            event.setStatus(status);
+            event.setLatencyNanos(latencyNanos);
+            event.setSlow(slow);
+            QueryStats stats = (QueryStats) request.getAttribute(QueryStats.REQUEST_ATTRIBUTE);
+            if (stats != null) {
+                event.setStatements(stats.getStatements());
+                event.setRows(stats.getRows());
+                event.setSqlMillis(stats.getTimeMillis());
+            }
+            Claims claims = (Claims) request.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTRIBUTE);
+            if (claims != null) {
+                event.setPrincipal(claims.getSubject());
+            }
+            if (detailed) {
+                event.setQuery(request.getQueryString());
+                if (stats != null) {
+                    event.setSql(stats.getSql());
+                }
+            }
+        } finally {
+            ring.publish(event);
+        }
+    }
+
+    public long getDropped() {
+        return ring.getDropped();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    // Waits for the writer to catch up with everything published so far; for tests and shutdown hooks
+    public void flush() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!ring.isDrained() && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+    }
+
+    private boolean sampled(String method, String route) {
+        double rate = rateFor(method, route);
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    double rateFor(String method, String route) {
+        String key = method + " " + route;
+        Double cached = rates.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        double rate = sampleRate;
+        for (RouteRule rule : rules) {
+            if ((rule.method() == null || rule.method().equals(method)) && matcher.match(rule.pattern(), route)) {
+                rate = rule.rate();
+                break;
+            }
+        }
+        // Unmatched requests are keyed by raw URI, so don't let them grow the cache without bound
+        if (rates.size() < MAX_CACHED_ROUTES) {
+            rates.put(key, rate);
+        }
+        return rate;
+    }
+
+    private void drainLoop() {
+        long reportedDrops = 0;
+        long lastReport = System.nanoTime();
+        while (true) {
+            int drained = ring.drain(this::write, DRAIN_BATCH);
+            long drops = ring.getDropped();
+            if (drops > reportedDrops && System.nanoTime() - lastReport >= DROP_REPORT_INTERVAL_NANOS) {
+                log.warn("Access log ring full: dropped {} event(s)", drops - reportedDrops);
+                reportedDrops = drops;
+                lastReport = System.nanoTime();
+            }
+            if (drained == 0) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(drainIntervalMs));
+            }
+        }
+    }
+
+    private void write(AccessLogEvent event) {
+        boolean detailed = event.isSlow() || event.getStatus() >= 500;
+        if (detailed ? !access.isWarnEnabled() : !access.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder out = line;
+        out.setLength(0);
+        out.append("{\"ts\":\"").append(Instant.ofEpochMilli(event.getTimestamp())).append('"');
+        out.append(",\"method\":");
+        appendString(out, event.getMethod());
+        out.append(",\"route\":");
+        appendString(out, event.getRoute());
+        out.append(",\"status\":").append(event.getStatus());
+        out.append(",\"ms\":").append(String.format(Locale.ROOT, "%.2f", event.getLatencyNanos() / 1_000_000.0));
+        if (event.getStatements() >= 0) {
+            out.append(",\"sql\":").append(event.getStatements())
+                    .append(",\"rows\":").append(event.getRows())
+                    .append(",\"sqlMs\":").append(event.getSqlMillis());
+        }
+        if (event.getPrincipal() != null) {
+            out.append(",\"user\":");
+            appendString(out, event.getPrincipal());
+        }
+        if (detailed) {
+            out.append(",\"slow\":").append(event.isSlow());
+            if (event.getQuery() != null) {
+                out.append(",\"query\":");
+                appendString(out, event.getQuery());
+            }
+            if (event.getSql() != null && !event.getSql().isEmpty()) {
+                out.append(",\"statements\":[");
+                for (int i = 0; i < event.getSql().size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    appendString(out, event.getSql().get(i));
+                }
+                out.append(']');
+            }
+        }
+        out.append('}');
+
+        if (detailed) {
+            access.warn(out.toString());
+        } else {
+            access.info(out.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private record RouteRule(String method, String pattern, double rate) {
+
+        static RouteRule parse(String entry) {
+            int equals = entry.lastIndexOf('=');
+            if (equals < 0) {
+                throw new IllegalStateException("books.access-log.route-sample-rates entries look like '[METHOD ]pattern=rate', not '" + entry + "'");
+            }
+            String target = entry.substring(0, equals).trim();
+            double rate = Double.parseDouble(entry.substring(equals + 1).trim());
+            int space = target.indexOf(' ');
+            if (space < 0) {
+                return new RouteRule(null, target, rate);
+            }
+            return new RouteRule(target.substring(0, space).toUpperCase(Locale.ROOT), target.substring(space + 1).trim(), rate);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.thedigitalshelf.books.diagnostics;
+
+import java.util.List;
+
+// One request in the access log ring. Slots are allocated once and refilled, so nothing here is final.
+public final class AccessLogEvent {
+
+    long sequence;
+    volatile long published = -1;
+
+    private long timestamp;
+    private String method;
+    private String route;
+    private int status;
+    private long latencyNanos;
+    private int statements = -1;
+    private long rows;
+    private long sqlMillis;
+    private String principal;
+    private boolean slow;
+    private String query;
+    private List<String> sql;
+
+    // Constructors
+    AccessLogEvent() {}
+
+    void clear() {
+        method = null;
+        route = null;
+        principal = null;
+        query = null;
+        sql = null;
+        statements = -1;
+        rows = 0;
+        sqlMillis = 0;
+        slow = false;
+    }
+
+    // Getters and Setters
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public void setLatencyNanos(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    // -1 when SQL wasn't recorded for the request
+    public int getStatements() {
+        return statements;
+    }
+
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getSqlMillis() {
+        return sqlMillis;
+    }
+
+    public void setSqlMillis(long sqlMillis) {
+        this.sqlMillis = sqlMillis;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public boolean isSlow() {
+        return slow;
+    }
+
+    public void setSlow(boolean slow) {
+        this.slow = slow;
+    }
+
+    // Only captured for slow and failed requests
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public List<String> getSql() {
+        return sql;
+    }
+
+    public void setSql(List<String> sql) {
+        this.sql = sql;
+    }
+}
@@ -0,0 +1,84 @@
+package com.thedigitalshelf.books.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring of preallocated access log events with many producers and one consumer.
+ * A producer claims the next sequence with a CAS, fills that slot and publishes it; the consumer
+ * takes slots strictly in sequence order. When the consumer falls a full ring behind, new events
+ * are dropped and counted instead of blocking the request thread.
+ */
+public final class AccessLogRing {
+
+    private final AccessLogEvent[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Next sequence to consume; only the consumer writes it
+    private volatile long consumed;
+
+    public AccessLogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new AccessLogEvent[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AccessLogEvent();
+        }
+        mask = size - 1;
+    }
+
+    // Returns a slot to fill and then hand to publish(), or null when the ring is full
+    public AccessLogEvent claim() {
+        while (true) {
+            long next = claimed.get();
+            if (next - consumed >= slots.length) {
+                dropped.incrementAndGet();
+                return null;
+            }
+            if (claimed.compareAndSet(next, next + 1)) {
+                AccessLogEvent slot = slots[(int) (next & mask)];
+                slot.sequence = next;
+                return slot;
+            }
+        }
+    }
+
+    // Must follow every successful claim, even if filling the slot failed, or the consumer stalls
+    public void publish(AccessLogEvent event) {
+        event.published = event.sequence;
+    }
+
+    // Hands up to 'max' published events to the sink in order; single consumer only
+    public int drain(Consumer<AccessLogEvent> sink, int max) {
+        long next = consumed;
+        int count = 0;
+        while (count < max) {
+            AccessLogEvent slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                break;
+            }
+            try {
+                sink.accept(slot);
+            } finally {
+                slot.clear();
+                next++;
+                count++;
+                consumed = next;
+            }
+        }
+        return count;
+    }
+
+    // True once everything claimed so far has been consumed
+    public boolean isDrained() {
+        return consumed >= claimed.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
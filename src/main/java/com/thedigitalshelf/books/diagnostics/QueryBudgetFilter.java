@@ -0,0 +1,115 @@
+package com.thedigitalshelf.books.diagnostics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Records the SQL each request runs and logs requests that go over the statement budget.
+ * With expose-headers on (the dev profile) the counts are also sent back as X-Query-* headers;
+ * those are written when the body starts, so they cover everything the handler did.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "books.query-budget.enabled", havingValue = "true", matchIfMissing = false)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    @Value("${books.query-budget.max-statements:10}")
+    private int maxStatements;
+
+    @Value("${books.query-budget.expose-headers:false}")
+    private boolean exposeHeaders;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        QueryStats stats = QueryStats.start();
+        StatsHeaderResponse wrapped = exposeHeaders ? new StatsHeaderResponse(response, stats) : null;
+        try {
+            filterChain.doFilter(request, wrapped != null ? wrapped : response);
+        } finally {
+            stats.stop();
+            request.setAttribute(QueryStats.REQUEST_ATTRIBUTE, stats);
+            if (wrapped != null) {
+                wrapped.writeHeaders();
+            }
+            if (stats.getStatements() > maxStatements) {
+                log.warn("{} {} ran {} (budget {}): {}", request.getMethod(), request.getRequestURI(),
+                        stats, maxStatements, stats.getSql());
+            }
+        }
+    }
+
+    private static final class StatsHeaderResponse extends HttpServletResponseWrapper {
+        private final QueryStats stats;
+        private boolean written;
+
+        private StatsHeaderResponse(HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            setHeader("X-Query-Count", String.valueOf(stats.getStatements()));
+            setHeader("X-Query-Rows", String.valueOf(stats.getRows()));
+            setHeader("X-Query-Time-Ms", String.valueOf(stats.getTimeMillis()));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
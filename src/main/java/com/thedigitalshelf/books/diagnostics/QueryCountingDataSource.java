@@ -0,0 +1,138 @@
+package com.thedigitalshelf.books.diagnostics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Wraps connections so that statements created while a {@link QueryStats} recording is active
+ * report to it. Statements created outside a recording (background jobs, startup) are handed out
+ * unwrapped and cost nothing extra. Inside a recording every statement and result set goes through
+ * a reflection proxy, which is why books.query-budget.enabled is off outside the dev profile.
+ * Closing it closes the wrapped pool, so the context still shuts the pool down.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource implements Closeable {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    public QueryCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryCountingDataSource.invoke(target, method, args);
+            QueryStats stats = QueryStats.current();
+            if (stats == null || !(result instanceof Statement statement)) {
+                return result;
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(),
+                    new Class<?>[]{type}, new StatementHandler(statement, sql, stats));
+        }
+    }
+
+    private record StatementHandler(Statement target, String preparedSql, QueryStats stats) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!EXECUTE_METHODS.contains(name)) {
+                Object result = QueryCountingDataSource.invoke(target, method, args);
+                return name.equals("getResultSet") && result instanceof ResultSet resultSet ? wrap(resultSet) : result;
+            }
+
+            long start = System.nanoTime();
+            Object result = QueryCountingDataSource.invoke(target, method, args);
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            stats.recordStatement(sql, System.nanoTime() - start);
+
+            if (result instanceof ResultSet resultSet) {
+                return wrap(resultSet);
+            }
+            if (result instanceof Number count && !name.equals("execute")) {
+                stats.recordRows(Math.max(0, count.longValue()));
+            } else if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    stats.recordRows(Math.max(0, count));
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    stats.recordRows(Math.max(0, count));
+                }
+            }
+            return result;
+        }
+
+        private ResultSet wrap(ResultSet resultSet) {
+            return (ResultSet) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new ResultSetHandler(resultSet, stats));
+        }
+    }
+
+    private record ResultSetHandler(ResultSet target, QueryStats stats) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryCountingDataSource.invoke(target, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                stats.recordRows(1);
+            }
+            return result;
+        }
+    }
+}
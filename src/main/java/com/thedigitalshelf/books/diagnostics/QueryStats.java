@@ -0,0 +1,107 @@
+package com.thedigitalshelf.books.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDBC statements executed on the current thread while a recording is active: how many, how many
+ * rows they read or wrote, and how long the database took. The HTTP layer opens one recording per
+ * request; anything else can measure a block of code with {@link #capture(Runnable)}.
+ */
+public final class QueryStats {
+
+    public static final String REQUEST_ATTRIBUTE = "com.thedigitalshelf.books.diagnostics.QueryStats";
+
+    private static final int MAX_RECORDED_SQL = 20;
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final QueryStats parent;
+    private final List<String> sql = new ArrayList<>();
+    private int statements;
+    private long rows;
+    private long nanos;
+
+    private QueryStats(QueryStats parent) {
+        this.parent = parent;
+    }
+
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats(CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    // Ends the recording; an enclosing recording also gets these counts
+    public void stop() {
+        if (parent != null) {
+            parent.include(this);
+            CURRENT.set(parent);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    // Adds a recording made on another thread on behalf of this one
+    public void include(QueryStats other) {
+        statements += other.statements;
+        rows += other.rows;
+        nanos += other.nanos;
+        for (String statement : other.sql) {
+            recordSql(statement);
+        }
+    }
+
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public static QueryStats capture(Runnable action) {
+        QueryStats stats = start();
+        try {
+            action.run();
+        } finally {
+            stats.stop();
+        }
+        return stats;
+    }
+
+    void recordStatement(String statement, long elapsedNanos) {
+        statements++;
+        nanos += elapsedNanos;
+        recordSql(statement);
+    }
+
+    void recordRows(long count) {
+        rows += count;
+    }
+
+    private void recordSql(String statement) {
+        if (statement != null && sql.size() < MAX_RECORDED_SQL) {
+            sql.add(statement);
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    // The first statements executed, for logs and assertion messages
+    public List<String> getSql() {
+        return Collections.unmodifiableList(sql);
+    }
+
+    @Override
+    public String toString() {
+        return statements + " statement(s), " + rows + " row(s), " + getTimeMillis() + " ms";
+    }
+}
@@ -0,0 +1,27 @@
+package com.thedigitalshelf.books.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class BookBatchRequest {
+
+    @NotEmpty(message = "At least one id is required")
+    private List<Integer> ids;
+
+    // Constructors
+    public BookBatchRequest() {}
+
+    public BookBatchRequest(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    // Getters and Setters
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+}
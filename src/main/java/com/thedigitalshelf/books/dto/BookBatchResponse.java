@@ -0,0 +1,35 @@
+package com.thedigitalshelf.books.dto;
+
+import com.thedigitalshelf.books.entity.Books;
+
+import java.util.List;
+
+public class BookBatchResponse {
+    private List<Books> books;
+    private List<Integer> missing;
+
+    // Constructors
+    public BookBatchResponse() {}
+
+    public BookBatchResponse(List<Books> books, List<Integer> missing) {
+        this.books = books;
+        this.missing = missing;
+    }
+
+    // Getters and Setters
+    public List<Books> getBooks() {
+        return books;
+    }
+
+    public void setBooks(List<Books> books) {
+        this.books = books;
+    }
+
+    public List<Integer> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<Integer> missing) {
+        this.missing = missing;
+    }
+}
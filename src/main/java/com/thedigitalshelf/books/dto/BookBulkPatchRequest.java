@@ -0,0 +1,40 @@
+package com.thedigitalshelf.books.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class BookBulkPatchRequest {
+
+    @NotEmpty(message = "At least one id is required")
+    private List<Integer> ids;
+
+    @NotNull(message = "Patch is required")
+    private BookPatch patch;
+
+    // Constructors
+    public BookBulkPatchRequest() {}
+
+    public BookBulkPatchRequest(List<Integer> ids, BookPatch patch) {
+        this.ids = ids;
+        this.patch = patch;
+    }
+
+    // Getters and Setters
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    public BookPatch getPatch() {
+        return patch;
+    }
+
+    public void setPatch(BookPatch patch) {
+        this.patch = patch;
+    }
+}
@@ -0,0 +1,72 @@
+package com.thedigitalshelf.books.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Optional sorting, date range and limit accepted by the book list endpoints
+public class BookListOptions {
+    private String sort;
+    private String direction;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate publishedFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate publishedTo;
+
+    private Integer limit;
+
+    // Constructors
+    public BookListOptions() {}
+
+    public boolean isEmpty() {
+        return sort == null && direction == null && publishedFrom == null && publishedTo == null && limit == null;
+    }
+
+    // Stable key for request coalescing
+    public String key() {
+        return sort + "|" + direction + "|" + publishedFrom + "|" + publishedTo + "|" + limit;
+    }
+
+    // Getters and Setters
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+
+    public LocalDate getPublishedFrom() {
+        return publishedFrom;
+    }
+
+    public void setPublishedFrom(LocalDate publishedFrom) {
+        this.publishedFrom = publishedFrom;
+    }
+
+    public LocalDate getPublishedTo() {
+        return publishedTo;
+    }
+
+    public void setPublishedTo(LocalDate publishedTo) {
+        this.publishedTo = publishedTo;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
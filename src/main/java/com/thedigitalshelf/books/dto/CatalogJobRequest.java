@@ -0,0 +1,74 @@
+package com.thedigitalshelf.books.dto;
+
+import com.thedigitalshelf.books.entity.CatalogJob;
+import jakarta.validation.constraints.NotNull;
+
+public class CatalogJobRequest {
+
+    @NotNull(message = "Type is required")
+    private CatalogJob.Type type;
+
+    // Filters; a job applies to books matching all of the given ones
+    private Integer authorId;
+    private Integer categoryId;
+    private Boolean featured;
+
+    // For PATCH jobs
+    private BookPatch patch;
+
+    // Constructors
+    public CatalogJobRequest() {}
+
+    public CatalogJobRequest(CatalogJob.Type type, Integer authorId, Integer categoryId, Boolean featured, BookPatch patch) {
+        this.type = type;
+        this.authorId = authorId;
+        this.categoryId = categoryId;
+        this.featured = featured;
+        this.patch = patch;
+    }
+
+    public boolean hasFilter() {
+        return authorId != null || categoryId != null || featured != null;
+    }
+
+    // Getters and Setters
+    public CatalogJob.Type getType() {
+        return type;
+    }
+
+    public void setType(CatalogJob.Type type) {
+        this.type = type;
+    }
+
+    public Integer getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(Integer authorId) {
+        this.authorId = authorId;
+    }
+
+    public Integer getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public Boolean getFeatured() {
+        return featured;
+    }
+
+    public void setFeatured(Boolean featured) {
+        this.featured = featured;
+    }
+
+    public BookPatch getPatch() {
+        return patch;
+    }
+
+    public void setPatch(BookPatch patch) {
+        this.patch = patch;
+    }
+}
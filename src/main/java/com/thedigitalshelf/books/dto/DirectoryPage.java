@@ -0,0 +1,36 @@
+package com.thedigitalshelf.books.dto;
+
+import com.thedigitalshelf.books.entity.DirectoryEntry;
+
+import java.util.List;
+
+// One page of /api/authors or /api/categories; pass 'next' back as ?after= for the following page
+public class DirectoryPage {
+    private List<? extends DirectoryEntry> items;
+    private String next;
+
+    // Constructors
+    public DirectoryPage() {}
+
+    public DirectoryPage(List<? extends DirectoryEntry> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    // Getters and Setters
+    public List<? extends DirectoryEntry> getItems() {
+        return items;
+    }
+
+    public void setItems(List<? extends DirectoryEntry> items) {
+        this.items = items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
@@ -0,0 +1,33 @@
+package com.thedigitalshelf.books.dto;
+
+import java.time.Instant;
+
+public class ViewHistoryPoint {
+    private Instant start;
+    private long views;
+
+    // Constructors
+    public ViewHistoryPoint() {}
+
+    public ViewHistoryPoint(Instant start, long views) {
+        this.start = start;
+        this.views = views;
+    }
+
+    // Getters and Setters
+    public Instant getStart() {
+        return start;
+    }
+
+    public void setStart(Instant start) {
+        this.start = start;
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    public void setViews(long views) {
+        this.views = views;
+    }
+}
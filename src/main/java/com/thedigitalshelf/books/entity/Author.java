@@ -0,0 +1,11 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "authors")
+public class Author extends DirectoryEntry {
+
+    // Constructors
+    public Author() {}
+}
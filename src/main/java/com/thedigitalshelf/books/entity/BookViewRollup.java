@@ -0,0 +1,72 @@
+package com.thedigitalshelf.books.entity;
+
+import com.thedigitalshelf.books.analytics.ViewGranularity;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "book_view_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_book_view_rollup", columnNames = {"book_id", "granularity", "bucket_start"}))
+public class BookViewRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private int bookId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    private ViewGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+
+    @Column(name = "views", nullable = false)
+    private long views;
+
+    // Constructors
+    public BookViewRollup() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+
+    public ViewGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(ViewGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Instant getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(Instant bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getViews() {
+        return views;
+    }
+
+    public void setViews(long views) {
+        this.views = views;
+    }
+}
@@ -1,7 +1,20 @@
 package com.thedigitalshelf.books.entity;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.thedigitalshelf.books.util.PublishedDateParser;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDate;
+
 @Entity
-@Table(name = "booksdigital")
+@Table(name = "booksdigital", indexes = {
+        @Index(name = "idx_books_published_on", columnList = "published_on"),
+        @Index(name = "idx_books_rating", columnList = "rating"),
+        @Index(name = "idx_books_price", columnList = "price"),
+        @Index(name = "idx_books_views", columnList = "views"),
+        @Index(name = "idx_books_author_id", columnList = "author_id"),
+        @Index(name = "idx_books_category_id", columnList = "category_id")
+})
 public class Books {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -15,6 +28,9 @@ public class Books {
     private String publisher;
     @Column(name = "published_date", length = 50)
     private String publishedDate;
+    // typed copy of publishedDate for range queries and sorting; derived on save
+    @Column(name = "published_on")
+    private LocalDate publishedOn;
     @Column(name = "description", length = 2000)
     private String description;
     @Column(name = "category", length = 100)
@@ -34,6 +50,21 @@ public class Books {
     @Column(name = "featured", nullable = false)
     private boolean featured = false;
 
+    // optimistic locking; existing rows start at 0 when the column is added
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+    // Directory ids for author and category, kept in step with the names by CatalogDirectory
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "author_id", updatable = false)
+    private Integer authorId;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "category_id", updatable = false)
+    private Integer categoryId;
+
     // no-args constructor
     public Books() {
 
@@ -54,6 +85,27 @@ public class Books {
         this.featured = featured;
     }
 
+    // copy constructor, for handing one loaded book to several requests
+    public Books(Books other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.author = other.author;
+        this.publisher = other.publisher;
+        this.publishedDate = other.publishedDate;
+        this.publishedOn = other.publishedOn;
+        this.description = other.description;
+        this.category = other.category;
+        this.image = other.image;
+        this.url = other.url;
+        this.rating = other.rating;
+        this.price = other.price;
+        this.views = other.views;
+        this.featured = other.featured;
+        this.version = other.version;
+        this.authorId = other.authorId;
+        this.categoryId = other.categoryId;
+    }
+
 
     // getters and Setters
 
@@ -97,6 +149,20 @@ public class Books {
         this.publishedDate = publishedDate;
     }
 
+    public LocalDate getPublishedOn() {
+        return publishedOn;
+    }
+
+    public void setPublishedOn(LocalDate publishedOn) {
+        this.publishedOn = publishedOn;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void derivePublishedOn() {
+        this.publishedOn = PublishedDateParser.parse(publishedDate);
+    }
+
     public String getDescription() {
         return description;
     }
@@ -161,6 +227,30 @@ public class Books {
         this.views = views;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Integer getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(Integer authorId) {
+        this.authorId = authorId;
+    }
+
+    public Integer getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId) {
+        this.categoryId = categoryId;
+    }
+
     @Override
     public String toString() {
         return "Books{" +
@@ -169,6 +259,7 @@ public class Books {
                 ", author='" + author + '\'' +
                 ", publisher='" + publisher + '\'' +
                 ", publishedDate='" + publishedDate + '\'' +
+                ", publishedOn=" + publishedOn +
                 ", description='" + description + '\'' +
                 ", category='" + category + '\'' +
                 ", image='" + image + '\'' +
@@ -176,6 +267,7 @@ public class Books {
                 ", rating=" + rating +
                 ", price=" + price +
                 ", featured=" + featured +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// One id range of a job on one shard, worked through in id order; lastId is the checkpoint a restart resumes from
+@Entity
+@Table(name = "catalog_job_partitions", indexes = @Index(name = "idx_catalog_job_partitions_job_id", columnList = "job_id"))
+public class CatalogJobPartition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    // Books with lastId < id <= toId are still to do
+    @Column(name = "last_id", nullable = false)
+    private int lastId;
+
+    @Column(name = "to_id", nullable = false)
+    private int toId;
+
+    @Column(nullable = false)
+    private boolean done;
+
+    // Instance working on the partition; another instance may take it over once leaseUntil has passed
+    @Column(length = 64)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+
+    // Constructors
+    public CatalogJobPartition() {}
+
+    public CatalogJobPartition(Long jobId, int shard, int lastId, int toId) {
+        this.jobId = jobId;
+        this.shard = shard;
+        this.lastId = lastId;
+        this.toId = toId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+
+    public int getToId() {
+        return toId;
+    }
+
+    public void setToId(int toId) {
+        this.toId = toId;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+}
@@ -0,0 +1,11 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "categories")
+public class Category extends DirectoryEntry {
+
+    // Constructors
+    public Category() {}
+}
@@ -0,0 +1,61 @@
+package com.thedigitalshelf.books.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+// A normalized author or category name with the number of books that carry it
+@MappedSuperclass
+public abstract class DirectoryEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    // Spelling of the first book that introduced the name
+    @Column(name = "name", nullable = false, length = 200)
+    private String name;
+
+    // Trimmed, lower-cased, single-spaced name; unique, and the directory sort order
+    @JsonIgnore
+    @Column(name = "name_key", nullable = false, unique = true, length = 200)
+    private String nameKey;
+
+    @Column(name = "book_count", nullable = false)
+    private int bookCount;
+
+    // Constructors
+    protected DirectoryEntry() {}
+
+    // Getters and Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getNameKey() {
+        return nameKey;
+    }
+
+    public void setNameKey(String nameKey) {
+        this.nameKey = nameKey;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public void setBookCount(int bookCount) {
+        this.bookCount = bookCount;
+    }
+}
@@ -0,0 +1,39 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+// Per-shard progress of the published_on backfill: books up to lastCheckedId have been parsed once, dates that failed included
+@Entity
+@Table(name = "published_date_backfill")
+public class PublishedDateCheckpoint {
+    @Id
+    private Integer shard;
+
+    @Column(name = "last_checked_id", nullable = false)
+    private int lastCheckedId;
+
+    // Constructors
+    public PublishedDateCheckpoint() {}
+
+    public PublishedDateCheckpoint(Integer shard, int lastCheckedId) {
+        this.shard = shard;
+        this.lastCheckedId = lastCheckedId;
+    }
+
+    // Getters and Setters
+    public Integer getShard() {
+        return shard;
+    }
+
+    public void setShard(Integer shard) {
+        this.shard = shard;
+    }
+
+    public int getLastCheckedId() {
+        return lastCheckedId;
+    }
+
+    public void setLastCheckedId(int lastCheckedId) {
+        this.lastCheckedId = lastCheckedId;
+    }
+}
@@ -0,0 +1,58 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// A single revoked token, kept until the token would have expired anyway
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_revoked_tokens_created_at", columnList = "created_at")
+})
+public class RevokedToken {
+    @Id
+    @Column(name = "jti", length = 64)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // Lets other instances fetch only the revocations written since their last refresh
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    // Constructors
+    public RevokedToken() {}
+
+    public RevokedToken(String jti, Instant expiresAt) {
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+        this.createdAt = Instant.now();
+    }
+
+    // Getters and Setters
+    public String getJti() {
+        return jti;
+    }
+
+    public void setJti(String jti) {
+        this.jti = jti;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,70 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// Every token issued to the user up to issuedBefore is revoked ("log out everywhere")
+@Entity
+@Table(name = "token_cutoffs", indexes = {
+        @Index(name = "idx_token_cutoffs_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_token_cutoffs_created_at", columnList = "created_at")
+})
+public class TokenCutoff {
+    @Id
+    @Column(name = "username", length = 50)
+    private String username;
+
+    @Column(name = "issued_before", nullable = false)
+    private Instant issuedBefore;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // When this row was last written; other instances poll for rows newer than what they have seen
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    // Constructors
+    public TokenCutoff() {}
+
+    public TokenCutoff(String username, Instant issuedBefore, Instant expiresAt) {
+        this.username = username;
+        this.issuedBefore = issuedBefore;
+        this.expiresAt = expiresAt;
+        this.createdAt = Instant.now();
+    }
+
+    // Getters and Setters
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Instant getIssuedBefore() {
+        return issuedBefore;
+    }
+
+    public void setIssuedBefore(Instant issuedBefore) {
+        this.issuedBefore = issuedBefore;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,71 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "user_shelves")
+public class UserShelf {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Serialized RoaringBitmap of book ids
+    @Column(name = "book_ids", nullable = false, length = 16777216)
+    private byte[] bookIds;
+
+    @Column(name = "book_count", nullable = false)
+    private int bookCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // Bumped by every write; a writer holding an older version reloads instead of overwriting
+    @Column(name = "version")
+    private Long version;
+
+    // Constructors
+    public UserShelf() {}
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public byte[] getBookIds() {
+        return bookIds;
+    }
+
+    public void setBookIds(byte[] bookIds) {
+        this.bookIds = bookIds;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public void setBookCount(int bookCount) {
+        this.bookCount = bookCount;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,36 @@
+package com.thedigitalshelf.books.entity;
+
+import jakarta.persistence.*;
+
+// Last epoch minute whose views an instance rolled up into book_view_rollups; each instance rolls up only its own views
+@Entity
+@Table(name = "view_rollup_checkpoints")
+public class ViewRollupCheckpoint {
+
+    @Id
+    @Column(name = "instance_id", length = 64)
+    private String instanceId;
+
+    @Column(name = "last_flushed_minute", nullable = false)
+    private long lastFlushedMinute;
+
+    // Constructors
+    public ViewRollupCheckpoint() {}
+
+    // Getters and Setters
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public long getLastFlushedMinute() {
+        return lastFlushedMinute;
+    }
+
+    public void setLastFlushedMinute(long lastFlushedMinute) {
+        this.lastFlushedMinute = lastFlushedMinute;
+    }
+}
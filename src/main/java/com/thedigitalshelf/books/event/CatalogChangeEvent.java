@@ -0,0 +1,57 @@
+package com.thedigitalshelf.books.event;
+
+// Published by BookService after a catalog mutation or a recorded view, and by InvalidationBus for changes made on other instances
+public class CatalogChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, VIEWED
+    }
+
+    private final Type type;
+    private final int bookId;
+    private final long timestamp;
+    private final String origin;
+
+    public CatalogChangeEvent(Type type, int bookId) {
+        this(type, bookId, System.currentTimeMillis(), null);
+    }
+
+    public CatalogChangeEvent(Type type, int bookId, long timestamp, String origin) {
+        this.type = type;
+        this.bookId = bookId;
+        this.timestamp = timestamp;
+        this.origin = origin;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Instance id of the node that made the change; null when it happened here
+    public String getOrigin() {
+        return origin;
+    }
+
+    // Remote changes are already persisted by their origin, so listeners that write should skip them
+    public boolean isRemote() {
+        return origin != null;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogChangeEvent{" +
+                "type=" + type +
+                ", bookId=" + bookId +
+                ", timestamp=" + timestamp +
+                (origin != null ? ", origin=" + origin : "") +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package com.thedigitalshelf.books.event;
+
+// Published by InvalidationBus when changes from another instance may have been missed; derived state should be rebuilt
+public class CatalogRefreshEvent {
+
+    private final String reason;
+    private final long timestamp;
+
+    public CatalogRefreshEvent(String reason) {
+        this.reason = reason;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogRefreshEvent{" +
+                "reason='" + reason + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package com.thedigitalshelf.books.event;
+
+// Published by ShelfService after a user's shelf is written, and by InvalidationBus for shelves written on other instances
+public class ShelfChangeEvent {
+
+    private final long userId;
+    private final String origin;
+
+    public ShelfChangeEvent(long userId) {
+        this(userId, null);
+    }
+
+    public ShelfChangeEvent(long userId, String origin) {
+        this.userId = userId;
+        this.origin = origin;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    // Instance id of the node that wrote the shelf; null when it happened here
+    public String getOrigin() {
+        return origin;
+    }
+
+    public boolean isRemote() {
+        return origin != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ShelfChangeEvent{" +
+                "userId=" + userId +
+                (origin != null ? ", origin=" + origin : "") +
+                '}';
+    }
+}
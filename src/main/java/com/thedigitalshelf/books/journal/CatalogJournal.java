@@ -0,0 +1,314 @@
+package com.thedigitalshelf.books.journal;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of catalog mutations and views, written to memory-mapped segment files.
+ * Appends only touch the mapping, which outlives a crash of the process. A background flusher
+ * forces dirty pages to disk every flush interval, so an OS crash or power loss can lose up to
+ * one interval of appends; callers that can't afford that call {@link #sync()}. The flusher
+ * also rotates full segments and compacts old ones.
+ *
+ * Replays read the segment files they started with; compaction waits for running replays
+ * before it replaces or deletes files.
+ *
+ * Compaction keeps each book's latest lifecycle entry plus one aggregated VIEWED entry per
+ * book and minute, so replays that filter views by minute see the same totals as before.
+ * The highest merged sequence always survives, as a DELETED tombstone if its book is gone,
+ * so a crash before the merged files are deleted can't make replay deliver them again.
+ */
+@Component
+public class CatalogJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogJournal.class);
+
+    @Value("${books.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${books.journal.dir:data/journal}")
+    private String directory;
+
+    @Value("${books.journal.segment-bytes:4194304}")
+    private int segmentBytes;
+
+    @Value("${books.journal.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${books.journal.compact-after-segments:4}")
+    private int compactAfterSegments;
+
+    private final Object lock = new Object();
+    // Held for a whole compaction so the flusher and explicit callers never share the temporary file
+    private final Object compacting = new Object();
+    private final ReadWriteLock segmentFiles = new ReentrantReadWriteLock();
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private Path dir;
+    private JournalSegment active;
+    private long lastSequence;
+    private boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            active = JournalSegment.create(dir.resolve(JournalSegment.fileName(1)), segmentBytes);
+        } else {
+            sealedSegments.addAll(segments.subList(0, segments.size() - 1));
+            active = JournalSegment.openForAppend(segments.get(segments.size() - 1));
+        }
+        lastSequence = active.getLastSequence();
+        if (lastSequence == 0 && !sealedSegments.isEmpty()) {
+            JournalSegment previous = JournalSegment.openReadOnly(sealedSegments.get(sealedSegments.size() - 1));
+            previous.forEach(entry -> lastSequence = Math.max(lastSequence, entry.sequence()));
+            previous.close();
+        }
+        log.info("Catalog journal opened at {} with {} segment(s), last sequence {}", dir.toAbsolutePath(), segments.size(), lastSequence);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndCompact, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flusher.shutdownNow();
+        synchronized (lock) {
+            active.force();
+            active.close();
+        }
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        // Other instances journal their own changes
+        if (enabled && !event.isRemote()) {
+            append(event.getType(), event.getBookId(), event.getTimestamp(),
+                    event.getType() == CatalogChangeEvent.Type.VIEWED ? 1 : 0);
+        }
+    }
+
+    public long append(CatalogChangeEvent.Type type, int bookId, long timestamp, int value) {
+        synchronized (lock) {
+            if (!active.hasRoom()) {
+                rotate();
+            }
+            long sequence = ++lastSequence;
+            active.append(new JournalEntry(sequence, type, bookId, timestamp, value));
+            dirty = true;
+            return sequence;
+        }
+    }
+
+    // Forces everything appended so far to disk instead of waiting for the next periodic flush
+    public void sync() {
+        synchronized (lock) {
+            if (enabled && dirty) {
+                active.force();
+                dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Replays every entry with a sequence greater than {@code afterSequence}, oldest first,
+     * and returns the last sequence delivered.
+     */
+    public long replay(long afterSequence, Consumer<JournalEntry> consumer) {
+        if (!enabled) {
+            return afterSequence;
+        }
+        segmentFiles.readLock().lock();
+        try {
+            List<Path> segments;
+            long upTo;
+            synchronized (lock) {
+                segments = new ArrayList<>(sealedSegments);
+                segments.add(active.getPath());
+                upTo = lastSequence;
+            }
+
+            long[] delivered = {afterSequence};
+            for (Path path : segments) {
+                try {
+                    JournalSegment segment = JournalSegment.openReadOnly(path);
+                    // Entries at or below the last delivered sequence are leftovers of an interrupted compaction
+                    segment.forEach(entry -> {
+                        if (entry.sequence() > delivered[0] && entry.sequence() <= upTo) {
+                            delivered[0] = entry.sequence();
+                            consumer.accept(entry);
+                        }
+                    });
+                    segment.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to replay journal segment " + path, e);
+                }
+            }
+            return delivered[0];
+        } finally {
+            segmentFiles.readLock().unlock();
+        }
+    }
+
+    public long getLastSequence() {
+        synchronized (lock) {
+            return lastSequence;
+        }
+    }
+
+    private void rotate() {
+        try {
+            active.force();
+            active.close();
+            sealedSegments.add(active.getPath());
+            active = JournalSegment.create(dir.resolve(JournalSegment.fileName(lastSequence + 1)), segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rotate catalog journal", e);
+        }
+    }
+
+    private void flushAndCompact() {
+        try {
+            sync();
+            compact();
+        } catch (Exception e) {
+            log.warn("Catalog journal flush/compaction failed: {}", e.getMessage());
+        }
+    }
+
+    // Merges the sealed segments once there are more than compact-after-segments of them; the flusher calls this too
+    public boolean compact() {
+        synchronized (compacting) {
+            List<Path> toCompact;
+            synchronized (lock) {
+                if (!enabled || sealedSegments.size() <= compactAfterSegments) {
+                    return false;
+                }
+                toCompact = new ArrayList<>(sealedSegments);
+            }
+            try {
+                compact(toCompact);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to compact catalog journal", e);
+            }
+            return true;
+        }
+    }
+
+    private void compact(List<Path> segments) throws IOException {
+        Map<Integer, JournalEntry> lifecycle = new HashMap<>();
+        Map<ViewMinute, JournalEntry> views = new HashMap<>();
+        JournalEntry[] newest = {null};
+        for (Path path : segments) {
+            JournalSegment segment = JournalSegment.openReadOnly(path);
+            segment.forEach(entry -> {
+                if (newest[0] == null || entry.sequence() > newest[0].sequence()) {
+                    newest[0] = entry;
+                }
+                if (entry.type() == CatalogChangeEvent.Type.VIEWED) {
+                    // Keeping minutes apart lets ViewAnalyticsStore skip views it already rolled up
+                    views.merge(new ViewMinute(entry.bookId(), entry.timestamp() / 60_000), entry, (previous, next) -> new JournalEntry(next.sequence(),
+                            next.type(), next.bookId(), next.timestamp(), previous.value() + next.value()));
+                } else {
+                    lifecycle.put(entry.bookId(), entry);
+                }
+            });
+            segment.close();
+        }
+
+        List<JournalEntry> kept = new ArrayList<>();
+        for (JournalEntry entry : lifecycle.values()) {
+            if (entry.type() != CatalogChangeEvent.Type.DELETED) {
+                kept.add(entry);
+            }
+        }
+        for (JournalEntry entry : views.values()) {
+            JournalEntry last = lifecycle.get(entry.bookId());
+            if (last == null || last.type() != CatalogChangeEvent.Type.DELETED) {
+                kept.add(entry);
+            }
+        }
+        kept.sort(Comparator.comparingLong(JournalEntry::sequence));
+        // Anything dropped belongs to a deleted book; the tombstone keeps the merged range's last sequence
+        JournalEntry last = newest[0];
+        if (last != null && (kept.isEmpty() || kept.get(kept.size() - 1).sequence() < last.sequence())) {
+            kept.add(new JournalEntry(last.sequence(), CatalogChangeEvent.Type.DELETED, last.bookId(), last.timestamp(), 0));
+        }
+
+        // Written beside the first merged segment, then swapped in; replay skips leftovers if we crash midway
+        Path first = segments.get(0);
+        Path temporary = dir.resolve(first.getFileName() + ".compacting");
+        Files.deleteIfExists(temporary);
+        JournalSegment compacted = JournalSegment.create(temporary, Math.max(1, kept.size()) * JournalSegment.RECORD_BYTES);
+        kept.forEach(compacted::append);
+        compacted.force();
+        compacted.close();
+
+        segmentFiles.writeLock().lock();
+        try {
+            synchronized (lock) {
+                Files.move(temporary, first, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (Path path : segments.subList(1, segments.size())) {
+                    Files.deleteIfExists(path);
+                }
+                sealedSegments.removeAll(segments);
+                sealedSegments.add(0, first);
+            }
+        } finally {
+            segmentFiles.writeLock().unlock();
+        }
+        log.info("Compacted {} journal segment(s) into {} entries", segments.size(), kept.size());
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith("segment-") && name.endsWith(".log");
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private record ViewMinute(int bookId, long minute) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.thedigitalshelf.books.journal;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+
+// One journal record; value is the view count for VIEWED entries and 0 otherwise
+public record JournalEntry(long sequence, CatalogChangeEvent.Type type, int bookId, long timestamp, int value) {
+}
@@ -0,0 +1,146 @@
+package com.thedigitalshelf.books.journal;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * A memory-mapped journal file of fixed-size records:
+ * <pre>
+ * 0  long sequence (0 marks the end of written data)
+ * 8  long timestamp
+ * 16 int  bookId
+ * 20 int  value
+ * 24 byte type, 3 bytes padding
+ * 28 int  CRC32C of bytes 0..27
+ * </pre>
+ */
+final class JournalSegment {
+
+    static final int RECORD_BYTES = 32;
+    private static final int CRC_OFFSET = 28;
+    private static final CatalogChangeEvent.Type[] TYPES = CatalogChangeEvent.Type.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int position;
+    private long lastSequence;
+
+    private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static String fileName(long firstSequence) {
+        return String.format("segment-%020d.log", firstSequence);
+    }
+
+    static JournalSegment create(Path path, int capacityBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = Math.max(RECORD_BYTES, capacityBytes - capacityBytes % RECORD_BYTES);
+        return new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    // Opens an existing segment for appending, truncating a torn trailing record if there is one
+    static JournalSegment openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JournalSegment segment = new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.recover();
+        return segment;
+    }
+
+    static JournalSegment openReadOnly(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        JournalSegment segment = new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        segment.position = segment.validLength();
+        return segment;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    boolean isEmpty() {
+        return position == 0;
+    }
+
+    boolean hasRoom() {
+        return position + RECORD_BYTES <= buffer.capacity();
+    }
+
+    void append(JournalEntry entry) {
+        int at = position;
+        buffer.putLong(at, entry.sequence());
+        buffer.putLong(at + 8, entry.timestamp());
+        buffer.putInt(at + 16, entry.bookId());
+        buffer.putInt(at + 20, entry.value());
+        buffer.put(at + 24, (byte) (entry.type().ordinal() + 1));
+        buffer.putInt(at + CRC_OFFSET, crc(at));
+        position += RECORD_BYTES;
+        lastSequence = entry.sequence();
+    }
+
+    void forEach(Consumer<JournalEntry> consumer) {
+        for (int at = 0; at < position; at += RECORD_BYTES) {
+            consumer.accept(read(at));
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private void recover() {
+        position = validLength();
+        if (position > 0) {
+            lastSequence = buffer.getLong(position - RECORD_BYTES);
+        }
+        // Zero anything after the last valid record so a torn write can't be mistaken for data later
+        for (int at = position; at < buffer.capacity() && buffer.getLong(at) != 0; at += RECORD_BYTES) {
+            for (int i = 0; i < RECORD_BYTES; i += 8) {
+                buffer.putLong(at + i, 0);
+            }
+        }
+    }
+
+    private int validLength() {
+        int at = 0;
+        while (at + RECORD_BYTES <= buffer.capacity()
+                && buffer.getLong(at) != 0
+                && buffer.getInt(at + CRC_OFFSET) == crc(at)) {
+            at += RECORD_BYTES;
+        }
+        return at;
+    }
+
+    private JournalEntry read(int at) {
+        return new JournalEntry(
+                buffer.getLong(at),
+                TYPES[buffer.get(at + 24) - 1],
+                buffer.getInt(at + 16),
+                buffer.getLong(at + 8),
+                buffer.getInt(at + 20));
+    }
+
+    private int crc(int at) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(at, CRC_OFFSET));
+        return (int) crc.getValue();
+    }
+}
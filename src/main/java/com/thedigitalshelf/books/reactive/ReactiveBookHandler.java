@@ -0,0 +1,212 @@
+package com.thedigitalshelf.books.reactive;
+
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.recommendation.SimilarBooksEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Handlers for the read-only /api/v2/books endpoints. Responses match the /api/books ones, and
+ * list endpoints stream one JSON document per line when the client accepts application/x-ndjson
+ * (or events with text/event-stream), with demand flowing back to the database.
+ */
+@Component
+@ConditionalOnProperty(name = "books.reactive.enabled", havingValue = "true")
+public class ReactiveBookHandler {
+
+    private static final List<MediaType> STREAMING_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    @Autowired
+    private ReactiveBookRepository books;
+
+    @Autowired
+    private SimilarBooksEngine similarBooks;
+
+    @Value("${books.batch.max-ids:100}")
+    private int maxBatchIds;
+
+    public Mono<ServerResponse> list(ServerRequest request) {
+        return respond(request, () -> books.findAll(options(request)));
+    }
+
+    public Mono<ServerResponse> search(ServerRequest request) {
+        return respond(request, () -> {
+            String query = request.queryParam("query").map(String::trim).orElse("");
+            BookListOptions options = options(request);
+            return query.isEmpty() ? books.findAll(options) : books.search(query, options);
+        });
+    }
+
+    public Mono<ServerResponse> byAuthor(ServerRequest request) {
+        return respond(request, () -> books.findByAuthor(request.pathVariable("author"), options(request)));
+    }
+
+    public Mono<ServerResponse> byRating(ServerRequest request) {
+        return respond(request, () -> books.findByRating(intVariable(request, "minRating"), options(request)));
+    }
+
+    public Mono<ServerResponse> featured(ServerRequest request) {
+        return respond(request, () -> books.findFeatured(options(request)));
+    }
+
+    public Mono<ServerResponse> authors(ServerRequest request) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(books.findAllAuthors().collectList(), new ParameterizedTypeReference<List<String>>() {});
+    }
+
+    public Mono<ServerResponse> total(ServerRequest request) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).body(books.count(), Long.class);
+    }
+
+    public Mono<ServerResponse> averageRating(ServerRequest request) {
+        return books.averageRating()
+                .flatMap(average -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(average))
+                .switchIfEmpty(ServerResponse.ok().build());
+    }
+
+    public Mono<ServerResponse> byId(ServerRequest request) {
+        int id;
+        try {
+            id = intVariable(request, "id");
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue(e.getMessage());
+        }
+        return books.findById(id)
+                .flatMap(book -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(book))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    public Mono<ServerResponse> batch(ServerRequest request) {
+        List<Integer> ids = new ArrayList<>();
+        try {
+            for (String value : request.queryParams().getOrDefault("ids", List.of())) {
+                for (String part : value.split(",")) {
+                    if (!part.isBlank()) {
+                        ids.add(Integer.valueOf(part.trim()));
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().bodyValue("Ids must be integers");
+        }
+        if (ids.isEmpty()) {
+            return ServerResponse.badRequest().bodyValue("At least one id is required");
+        }
+        if (ids.size() > maxBatchIds) {
+            return ServerResponse.badRequest().bodyValue("At most " + maxBatchIds + " ids per request");
+        }
+
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        Mono<BookBatchResponse> response = books.findAllById(distinctIds)
+                .collectMap(Books::getId)
+                .map(found -> assemble(distinctIds, found));
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).body(response, BookBatchResponse.class);
+    }
+
+    public Mono<ServerResponse> similar(ServerRequest request) {
+        int id;
+        int limit;
+        try {
+            id = intVariable(request, "id");
+            limit = Integer.parseInt(request.queryParam("limit").orElse("6"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Id and limit must be integers");
+        }
+        List<Integer> ids = similarBooks.getSimilarIds(id, Math.max(0, limit));
+        if (ids.isEmpty()) {
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(List.of());
+        }
+        Mono<List<Books>> similar = books.findAllById(ids)
+                .collectMap(Books::getId)
+                .map(found -> assemble(ids, found).getBooks());
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).body(similar, new ParameterizedTypeReference<List<Books>>() {});
+    }
+
+    private static BookBatchResponse assemble(Iterable<Integer> ids, Map<Integer, Books> found) {
+        List<Books> ordered = new ArrayList<>(found.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Books book = found.get(id);
+            if (book != null) {
+                ordered.add(book);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BookBatchResponse(ordered, missing);
+    }
+
+    // Bad parameters are reported as 400 before anything is sent; the body is a JSON array or a stream
+    private Mono<ServerResponse> respond(ServerRequest request, Supplier<Flux<Books>> query) {
+        Flux<Books> result;
+        try {
+            result = query.get();
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue(e.getMessage());
+        }
+        for (MediaType accepted : request.headers().accept()) {
+            for (MediaType streaming : STREAMING_TYPES) {
+                if (streaming.equalsTypeAndSubtype(accepted)) {
+                    return ServerResponse.ok().contentType(streaming).body(result, Books.class);
+                }
+            }
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).body(result, Books.class);
+    }
+
+    private static BookListOptions options(ServerRequest request) {
+        BookListOptions options = new BookListOptions();
+        options.setSort(request.queryParam("sort").orElse(null));
+        options.setDirection(request.queryParam("direction").orElse(null));
+        options.setPublishedFrom(date(request, "publishedFrom"));
+        options.setPublishedTo(date(request, "publishedTo"));
+        String limit = request.queryParam("limit").orElse(null);
+        if (limit != null) {
+            try {
+                options.setLimit(Integer.valueOf(limit.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Limit must be an integer");
+            }
+        }
+        return options;
+    }
+
+    private static LocalDate date(ServerRequest request, String name) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO date (yyyy-MM-dd)");
+        }
+    }
+
+    private static int intVariable(ServerRequest request, String name) {
+        try {
+            return Integer.parseInt(request.pathVariable(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+}
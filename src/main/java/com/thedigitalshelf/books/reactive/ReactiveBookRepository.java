@@ -0,0 +1,205 @@
+package com.thedigitalshelf.books.reactive;
+
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.service.CatalogDirectory;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The BookRepository reads over R2DBC, against the same booksdigital table. Rows are streamed as
+ * they are decoded, so a slow client holds back the query instead of buffering the result.
+ * List options behave exactly as in BookService: whitelisted sort column, nulls last, id as the
+ * tie-breaker and, only when one is requested, a limit capped at books.list.max-limit.
+ */
+@Component
+@ConditionalOnProperty(name = "books.reactive.enabled", havingValue = "true")
+public class ReactiveBookRepository {
+
+    private static final String SELECT = "SELECT id, title, author, publisher, published_date, published_on, description, "
+            + "category, image, url, rating, price, views, featured, version, author_id, category_id FROM booksdigital";
+
+    @Autowired
+    private DatabaseClient client;
+
+    @Autowired
+    private CatalogDirectory directory;
+
+    @Value("${books.list.max-limit:500}")
+    private int maxListLimit;
+
+    public Flux<Books> findAll() {
+        return client.sql(SELECT).map(ReactiveBookRepository::toBook).all();
+    }
+
+    public Mono<Books> findById(int id) {
+        return client.sql(SELECT + " WHERE id = :id").bind("id", id).map(ReactiveBookRepository::toBook).one();
+    }
+
+    public Flux<Books> findAllById(Collection<Integer> ids) {
+        return client.sql(SELECT + " WHERE id IN (:ids)").bind("ids", ids).map(ReactiveBookRepository::toBook).all();
+    }
+
+    public Flux<String> findAllAuthors() {
+        if (directory.isReady()) {
+            return client.sql("SELECT name FROM authors WHERE book_count > 0 ORDER BY name_key")
+                    .map(row -> row.get("name", String.class))
+                    .all();
+        }
+        return client.sql("SELECT DISTINCT author FROM booksdigital")
+                .map(row -> row.get("author", String.class))
+                .all();
+    }
+
+    public Mono<Long> count() {
+        return client.sql("SELECT COUNT(*) AS total FROM booksdigital")
+                .map(row -> row.get("total", Number.class).longValue())
+                .one();
+    }
+
+    public Mono<Double> averageRating() {
+        return client.sql("SELECT SUM(rating) AS total, COUNT(rating) AS rated FROM booksdigital")
+                .map(row -> {
+                    Number total = row.get("total", Number.class);
+                    long rated = row.get("rated", Number.class).longValue();
+                    return rated == 0 || total == null ? Double.NaN : total.doubleValue() / rated;
+                })
+                .one()
+                .filter(average -> !average.isNaN());
+    }
+
+    public Flux<Books> findAll(BookListOptions options) {
+        return list(new Filter(null, Map.of()), options);
+    }
+
+    public Flux<Books> search(String text, BookListOptions options) {
+        return list(new Filter("(title LIKE :pattern OR author LIKE :pattern OR description LIKE :pattern)",
+                Map.of("pattern", "%" + text + "%")), options);
+    }
+
+    public Flux<Books> findByAuthor(String author, BookListOptions options) {
+        return list(new Filter("LOWER(author) LIKE :pattern",
+                Map.of("pattern", "%" + author.toLowerCase(Locale.ROOT) + "%")), options);
+    }
+
+    public Flux<Books> findByRating(int minRating, BookListOptions options) {
+        return list(new Filter("rating >= :minRating", Map.of("minRating", minRating)), options);
+    }
+
+    public Flux<Books> findFeatured(BookListOptions options) {
+        return list(new Filter("featured = TRUE", Map.of()), options);
+    }
+
+    // Throws IllegalArgumentException for an unknown sort or direction, before any query runs
+    private Flux<Books> list(Filter filter, BookListOptions options) {
+        String direction = direction(options);
+        String column = column(options);
+
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> bindings = new LinkedHashMap<>(filter.bindings());
+        if (filter.condition() != null) {
+            conditions.add(filter.condition());
+        }
+        LocalDate from = options.getPublishedFrom();
+        LocalDate to = options.getPublishedTo();
+        if (from != null) {
+            conditions.add("published_on >= :publishedFrom");
+            bindings.put("publishedFrom", from);
+        }
+        if (to != null) {
+            conditions.add("published_on <= :publishedTo");
+            bindings.put("publishedTo", to);
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT);
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (!options.isEmpty()) {
+            if (column != null) {
+                sql.append(" ORDER BY ").append(column).append(' ').append(direction).append(" NULLS LAST,");
+            } else {
+                sql.append(" ORDER BY");
+            }
+            sql.append(" id ").append(direction);
+            if (options.getLimit() != null) {
+                sql.append(" LIMIT ").append(Math.max(1, Math.min(options.getLimit(), maxListLimit)));
+            }
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql.toString());
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            spec = spec.bind(binding.getKey(), binding.getValue());
+        }
+        return spec.map(ReactiveBookRepository::toBook).all();
+    }
+
+    private static String direction(BookListOptions options) {
+        if (options.getDirection() == null) {
+            return "DESC";
+        }
+        return switch (options.getDirection().trim().toLowerCase(Locale.ROOT)) {
+            case "asc" -> "ASC";
+            case "desc" -> "DESC";
+            default -> throw new IllegalArgumentException("Direction must be asc or desc");
+        };
+    }
+
+    private static String column(BookListOptions options) {
+        if (options.getSort() == null) {
+            return null;
+        }
+        return switch (options.getSort()) {
+            case "publishedDate" -> "published_on";
+            case "rating", "price", "views" -> options.getSort();
+            default -> throw new IllegalArgumentException("Sort must be one of publishedDate, rating, price, views");
+        };
+    }
+
+    private static Books toBook(Readable row) {
+        Books book = new Books();
+        book.setId(intValue(row.get("id", Number.class)));
+        book.setTitle(row.get("title", String.class));
+        book.setAuthor(row.get("author", String.class));
+        book.setPublisher(row.get("publisher", String.class));
+        book.setPublishedDate(row.get("published_date", String.class));
+        book.setPublishedOn(row.get("published_on", LocalDate.class));
+        book.setDescription(row.get("description", String.class));
+        book.setCategory(row.get("category", String.class));
+        book.setImage(row.get("image", String.class));
+        book.setUrl(row.get("url", String.class));
+        book.setRating(intValue(row.get("rating", Number.class)));
+        Number price = row.get("price", Number.class);
+        book.setPrice(price == null ? 0 : price.floatValue());
+        book.setViews(intValue(row.get("views", Number.class)));
+        book.setFeatured(Boolean.TRUE.equals(row.get("featured", Boolean.class)));
+        Number version = row.get("version", Number.class);
+        book.setVersion(version == null ? null : version.intValue());
+        Number authorId = row.get("author_id", Number.class);
+        book.setAuthorId(authorId == null ? null : authorId.intValue());
+        Number categoryId = row.get("category_id", Number.class);
+        book.setCategoryId(categoryId == null ? null : categoryId.intValue());
+        return book;
+    }
+
+    private static int intValue(Number value) {
+        return value == null ? 0 : value.intValue();
+    }
+
+    private record Filter(String condition, Map<String, Object> bindings) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.thedigitalshelf.books.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.util.List;
+
+/**
+ * Serves /api/v2/books from a Reactor Netty server on its own port, next to the servlet
+ * container that keeps serving /api/books. The two share the database schema, the JSON
+ * settings, the JWT secret and the revocation list, but no threads: this side runs on a small
+ * event-loop group and holds no thread per open connection.
+ */
+@Component
+@ConditionalOnProperty(name = "books.reactive.enabled", havingValue = "true")
+public class ReactiveCatalogServer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveCatalogServer.class);
+
+    @Value("${books.reactive.port:8081}")
+    private int port;
+
+    @Autowired
+    private ReactiveBookHandler handler;
+
+    @Autowired
+    private ReactiveJwtFilter jwtFilter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private DisposableServer server;
+
+    @PostConstruct
+    void start() {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .webFilter(corsFilter())
+                .build();
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes(), strategies)))
+                .bindNow();
+        log.info("Reactive catalog API listening on port {}", server.port());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    // The bound port; differs from books.reactive.port when that is 0
+    public int getPort() {
+        return server.port();
+    }
+
+    // Same access rules as /api/books: single books, batches and similar books need a token
+    RouterFunction<ServerResponse> routes() {
+        RouterFunction<ServerResponse> open = RouterFunctions.route()
+                .GET("/api/v2/books", handler::list)
+                .GET("/api/v2/books/search", handler::search)
+                .GET("/api/v2/books/featured", handler::featured)
+                .GET("/api/v2/books/authors", handler::authors)
+                .GET("/api/v2/books/stats/total", handler::total)
+                .GET("/api/v2/books/stats/average-rating", handler::averageRating)
+                .GET("/api/v2/books/author/{author}", handler::byAuthor)
+                .GET("/api/v2/books/rating/{minRating}", handler::byRating)
+                .build();
+        RouterFunction<ServerResponse> authenticated = RouterFunctions.route()
+                .GET("/api/v2/books/batch", handler::batch)
+                .GET("/api/v2/books/{id}/similar", handler::similar)
+                .GET("/api/v2/books/{id}", handler::byId)
+                .filter(jwtFilter)
+                .build();
+        return open.and(authenticated);
+    }
+
+    private static CorsWebFilter corsFilter() {
+        CorsConfiguration cors = new CorsConfiguration();
+        cors.setAllowedOriginPatterns(List.of("*"));
+        cors.setAllowedMethods(List.of("GET", "OPTIONS"));
+        cors.setAllowedHeaders(List.of("*"));
+        cors.setAllowCredentials(false);
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", cors);
+        return new CorsWebFilter(source);
+    }
+}
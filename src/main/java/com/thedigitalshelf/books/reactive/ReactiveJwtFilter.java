@@ -0,0 +1,54 @@
+package com.thedigitalshelf.books.reactive;
+
+import com.thedigitalshelf.books.security.JwtAuthenticationFilter;
+import com.thedigitalshelf.books.security.JwtUtil;
+import com.thedigitalshelf.books.security.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+// Bearer token check for the v2 routes: signature, expiry and the in-memory denylist, with no
+// user lookup, so it never blocks the event loop
+@Component
+@ConditionalOnProperty(name = "books.reactive.enabled", havingValue = "true")
+public class ReactiveJwtFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenRevocationService revocations;
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        String header = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith("Bearer ")) {
+            return unauthorized();
+        }
+        Claims claims;
+        try {
+            claims = jwtUtil.parseClaims(header.substring(7));
+        } catch (RuntimeException e) {
+            return unauthorized();
+        }
+        if (claims.getSubject() == null || revocations.isRevoked(claims)) {
+            return unauthorized();
+        }
+        request.attributes().put(JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, claims);
+        return next.handle(request);
+    }
+
+    private static Mono<ServerResponse> unauthorized() {
+        return ServerResponse.status(HttpStatus.UNAUTHORIZED)
+                .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                .build();
+    }
+}
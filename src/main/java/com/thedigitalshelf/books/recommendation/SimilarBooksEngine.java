@@ -0,0 +1,614 @@
+package com.thedigitalshelf.books.recommendation;
+
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import com.thedigitalshelf.books.service.BookService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Similar books" from TF-IDF vectors over title, description, category and author.
+ * A full build computes the top-N cosine neighbours of every book in parallel on a fork-join
+ * pool and stores them in flat int/float arrays. Saves and deletes are applied incrementally
+ * on a single background thread: changed ids are drained in batches and loaded together, a
+ * book whose title, author, category and description produce the same vector is skipped, and
+ * candidates are found through the inverted index rather than by scanning every row. The
+ * vocabulary's IDF weights are refreshed by the periodic full rebuild.
+ */
+@Service
+public class SimilarBooksEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarBooksEngine.class);
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "with", "from", "that", "this", "are", "was", "his", "her", "its",
+            "into", "their", "they", "you", "your", "not", "but", "all", "one", "has", "have", "who",
+            "which", "will", "book", "about", "what", "when", "how", "can", "more", "than", "also");
+
+    // Defaults filled in by BookController; they say nothing about the book
+    private static final Set<String> PLACEHOLDERS = Set.of("unknown author", "no description available");
+
+    @Value("${books.similar.neighbors:10}")
+    private int neighborCount;
+
+    @Value("${books.similar.rebuild-interval-ms:21600000}")
+    private long rebuildIntervalMs;
+
+    @Value("${books.similar.parallelism:0}")
+    private int parallelism;
+
+    @Autowired
+    private BookService bookService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    // Ids saved or deleted since the last drain; a burst of events for one book is applied once
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+    private Index index;
+    private ScheduledExecutorService worker;
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void start() {
+        index = new Index(0, neighborCount, new HashMap<>(), new int[0], 0);
+        index.postings = Postings.of(index);
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        // Rebuilds and incremental updates share one thread, so they never interleave
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "similar-books");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        worker.scheduleWithFixedDelay(this::safeRebuild, 0, rebuildIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() == CatalogChangeEvent.Type.VIEWED) {
+            return;
+        }
+        changed.add(event.getBookId());
+        if (drainQueued.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                drainQueued.set(false);
+                safely(this::drain);
+            });
+        }
+    }
+
+    @EventListener
+    public void onCatalogRefresh(CatalogRefreshEvent event) {
+        // A burst of refreshes needs only one rebuild
+        if (refreshQueued.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                refreshQueued.set(false);
+                safeRebuild();
+            });
+        }
+    }
+
+    public List<Integer> getSimilarIds(int bookId, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer row = index.rowOf.get(bookId);
+            if (row == null) {
+                return List.of();
+            }
+            int count = Math.min(limit, index.neighborCounts[row]);
+            List<Integer> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(index.neighborIds[row * index.k + i]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild() {
+        long started = System.nanoTime();
+        List<Books> books = bookService.getAllBooks();
+
+        Map<String, Integer> vocabulary = new HashMap<>();
+        List<Map<Integer, Integer>> termCounts = new ArrayList<>(books.size());
+        int[] documentFrequency = new int[1024];
+        for (Books book : books) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (String term : terms(book)) {
+                int termId = vocabulary.computeIfAbsent(term, t -> vocabulary.size());
+                counts.merge(termId, 1, Integer::sum);
+            }
+            for (int termId : counts.keySet()) {
+                if (termId >= documentFrequency.length) {
+                    documentFrequency = Arrays.copyOf(documentFrequency, Math.max(termId + 1, documentFrequency.length * 2));
+                }
+                documentFrequency[termId]++;
+            }
+            termCounts.add(counts);
+        }
+
+        Index built = new Index(books.size(), neighborCount, vocabulary, documentFrequency, books.size());
+        for (int row = 0; row < books.size(); row++) {
+            built.addRow(books.get(row).getId(), SparseVector.of(termCounts.get(row), built));
+        }
+        built.postings = Postings.of(built);
+        pool.invoke(new NeighborTask(built, built.postings, 0, built.size));
+
+        lock.writeLock().lock();
+        try {
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Built similar-book neighbours for {} books in {} ms", books.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void drain() {
+        List<Integer> ids = new ArrayList<>(changed);
+        changed.removeAll(ids);
+        if (ids.isEmpty()) {
+            return;
+        }
+        // One IN query per shard for the whole batch
+        BookBatchResponse batch = bookService.getBooksByIds(ids);
+        batch.getBooks().forEach(this::reindex);
+        batch.getMissing().forEach(this::remove);
+    }
+
+    private void reindex(Books book) {
+        int bookId = book.getId();
+        // Only this thread mutates the index, so it can read without the lock
+        Index current = index;
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (String term : terms(book)) {
+            counts.merge(current.termId(term), 1, Integer::sum);
+        }
+        SparseVector vector = SparseVector.of(counts, current);
+        Integer existing = current.rowOf.get(bookId);
+        SparseVector previous = existing != null ? current.vectors[existing] : null;
+        if (vector.equals(previous)) {
+            // Price, rating, featured and the like don't move a book's neighbours
+            return;
+        }
+
+        int row;
+        lock.writeLock().lock();
+        try {
+            row = existing != null ? existing : current.addRow(bookId, vector);
+            current.replaceVector(row, vector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Only rows sharing a term with the old or new vector can score against this book
+        Map<Integer, Float> scores = current.score(row);
+        Map<Integer, Map<Integer, Float>> recomputed = new HashMap<>();
+        for (int other : current.candidates(previous, vector)) {
+            if (other == row || current.vectors[other] == null) {
+                continue;
+            }
+            if (current.needsRecompute(other, bookId, scores.getOrDefault(other, 0f))) {
+                recomputed.put(other, current.score(other));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            current.setNeighbors(row, scores);
+            for (int other : current.candidates(previous, vector)) {
+                if (other == row || current.vectors[other] == null) {
+                    continue;
+                }
+                Map<Integer, Float> full = recomputed.get(other);
+                if (full != null) {
+                    current.setNeighbors(other, full);
+                } else {
+                    current.offer(other, bookId, scores.getOrDefault(other, 0f));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(int bookId) {
+        Index current = index;
+        Integer removed = current.rowOf.get(bookId);
+        if (removed == null) {
+            return;
+        }
+        SparseVector previous = current.vectors[removed];
+        current.vectors[removed] = null;
+
+        Map<Integer, Map<Integer, Float>> recomputed = new HashMap<>();
+        for (int row : current.candidates(previous, null)) {
+            if (current.vectors[row] != null && current.contains(row, bookId)) {
+                recomputed.put(row, current.score(row));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            current.rowOf.remove(bookId);
+            current.neighborCounts[removed] = 0;
+            recomputed.forEach(current::setNeighbors);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void safeRebuild() {
+        safely(this::rebuild);
+    }
+
+    private void safely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.warn("Similar-books update failed: {}", e.getMessage());
+        }
+    }
+
+    private static List<String> terms(Books book) {
+        List<String> terms = new ArrayList<>();
+        tokenize(book.getTitle(), terms, 2);
+        tokenize(book.getDescription(), terms, 1);
+        if (isInformative(book.getCategory())) {
+            String category = "category:" + book.getCategory().trim().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < 3; i++) {
+                terms.add(category);
+            }
+        }
+        if (isInformative(book.getAuthor())) {
+            String author = "author:" + book.getAuthor().trim().toLowerCase(Locale.ROOT);
+            terms.add(author);
+            terms.add(author);
+        }
+        return terms;
+    }
+
+    private static void tokenize(String text, List<String> terms, int repeat) {
+        if (!isInformative(text)) {
+            return;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= 3 && !STOP_WORDS.contains(token)) {
+                for (int i = 0; i < repeat; i++) {
+                    terms.add(token);
+                }
+            }
+        }
+    }
+
+    private static boolean isInformative(String text) {
+        return text != null && !text.isBlank() && !PLACEHOLDERS.contains(text.trim().toLowerCase(Locale.ROOT));
+    }
+
+    // L2-normalised TF-IDF vector with term ids in ascending order
+    private record SparseVector(int[] terms, float[] weights) {
+
+        static SparseVector of(Map<Integer, Integer> counts, Index index) {
+            int[] terms = counts.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            float[] weights = new float[terms.length];
+            double norm = 0;
+            for (int i = 0; i < terms.length; i++) {
+                double tf = 1 + Math.log(counts.get(terms[i]));
+                double idf = 1 + Math.log((1.0 + index.documents) / (1.0 + index.documentFrequency(terms[i])));
+                weights[i] = (float) (tf * idf);
+                norm += weights[i] * weights[i];
+            }
+            if (norm > 0) {
+                float scale = (float) (1 / Math.sqrt(norm));
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] *= scale;
+                }
+            }
+            return new SparseVector(terms, weights);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SparseVector other && Arrays.equals(terms, other.terms) && Arrays.equals(weights, other.weights);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(terms) + Arrays.hashCode(weights);
+        }
+
+        float dot(SparseVector other) {
+            float sum = 0;
+            int i = 0;
+            int j = 0;
+            while (i < terms.length && j < other.terms.length) {
+                if (terms[i] == other.terms[j]) {
+                    sum += weights[i++] * other.weights[j++];
+                } else if (terms[i] < other.terms[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return sum;
+        }
+    }
+
+    // Inverted index built with a full build: for each term, the rows containing it at that time
+    private record Postings(int[] offsets, int[] rows, float[] weights) {
+
+        static Postings of(Index index) {
+            int terms = index.vocabulary.size();
+            int[] offsets = new int[terms + 1];
+            for (int row = 0; row < index.size; row++) {
+                for (int term : index.vectors[row].terms) {
+                    offsets[term + 1]++;
+                }
+            }
+            for (int term = 0; term < terms; term++) {
+                offsets[term + 1] += offsets[term];
+            }
+            int[] rows = new int[offsets[terms]];
+            float[] weights = new float[offsets[terms]];
+            int[] fill = Arrays.copyOf(offsets, terms);
+            for (int row = 0; row < index.size; row++) {
+                SparseVector vector = index.vectors[row];
+                for (int i = 0; i < vector.terms.length; i++) {
+                    int at = fill[vector.terms[i]]++;
+                    rows[at] = row;
+                    weights[at] = vector.weights[i];
+                }
+            }
+            return new Postings(offsets, rows, weights);
+        }
+    }
+
+    private static final class NeighborTask extends RecursiveAction {
+        private static final int LEAF_ROWS = 64;
+
+        private final Index index;
+        private final Postings postings;
+        private final int from;
+        private final int to;
+
+        NeighborTask(Index index, Postings postings, int from, int to) {
+            this.index = index;
+            this.postings = postings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new NeighborTask(index, postings, from, middle), new NeighborTask(index, postings, middle, to));
+                return;
+            }
+            float[] scores = new float[index.size];
+            int[] touched = new int[index.size];
+            for (int row = from; row < to; row++) {
+                int touchedCount = 0;
+                SparseVector vector = index.vectors[row];
+                for (int i = 0; i < vector.terms.length; i++) {
+                    int term = vector.terms[i];
+                    for (int p = postings.offsets[term]; p < postings.offsets[term + 1]; p++) {
+                        int other = postings.rows[p];
+                        if (other == row) {
+                            continue;
+                        }
+                        if (scores[other] == 0) {
+                            touched[touchedCount++] = other;
+                        }
+                        scores[other] += vector.weights[i] * postings.weights[p];
+                    }
+                }
+                index.clearNeighbors(row);
+                for (int t = 0; t < touchedCount; t++) {
+                    int other = touched[t];
+                    index.offer(row, index.bookIds[other], scores[other]);
+                    scores[other] = 0;
+                }
+            }
+        }
+    }
+
+    // Rows of vectors plus a fixed-width neighbour table: row r owns slots [r*k, r*k + k)
+    private static final class Index {
+        private final int k;
+        private final Map<String, Integer> vocabulary;
+        private final Map<Integer, Integer> rowOf = new HashMap<>();
+        private int[] documentFrequency;
+        private final int documents;
+        private int size;
+        private int[] bookIds;
+        private SparseVector[] vectors;
+        private int[] neighborIds;
+        private float[] neighborScores;
+        private int[] neighborCounts;
+        private Postings postings;
+        // Rows given a vector after the full build, by term; their build-time postings may be stale
+        private final Map<Integer, List<Integer>> addedPostings = new HashMap<>();
+
+        Index(int capacity, int k, Map<String, Integer> vocabulary, int[] documentFrequency, int documents) {
+            this.k = k;
+            this.vocabulary = vocabulary;
+            this.documentFrequency = documentFrequency;
+            this.documents = documents;
+            int rows = Math.max(16, capacity);
+            bookIds = new int[rows];
+            vectors = new SparseVector[rows];
+            neighborIds = new int[rows * k];
+            neighborScores = new float[rows * k];
+            neighborCounts = new int[rows];
+        }
+
+        int documentFrequency(int termId) {
+            return termId < documentFrequency.length ? documentFrequency[termId] : 0;
+        }
+
+        // New terms seen after the last full build get the rarest possible weight until the next rebuild
+        int termId(String term) {
+            Integer termId = vocabulary.get(term);
+            if (termId == null) {
+                termId = vocabulary.size();
+                vocabulary.put(term, termId);
+                if (termId >= documentFrequency.length) {
+                    documentFrequency = Arrays.copyOf(documentFrequency, Math.max(termId + 1, documentFrequency.length * 2));
+                }
+                documentFrequency[termId] = 1;
+            }
+            return termId;
+        }
+
+        int addRow(int bookId, SparseVector vector) {
+            if (size == bookIds.length) {
+                int rows = bookIds.length + (bookIds.length >> 1);
+                bookIds = Arrays.copyOf(bookIds, rows);
+                vectors = Arrays.copyOf(vectors, rows);
+                neighborIds = Arrays.copyOf(neighborIds, rows * k);
+                neighborScores = Arrays.copyOf(neighborScores, rows * k);
+                neighborCounts = Arrays.copyOf(neighborCounts, rows);
+            }
+            int row = size++;
+            bookIds[row] = bookId;
+            vectors[row] = vector;
+            rowOf.put(bookId, row);
+            return row;
+        }
+
+        void clearNeighbors(int row) {
+            neighborCounts[row] = 0;
+        }
+
+        // Rebuilds a row's neighbour list from a score per candidate row
+        void setNeighbors(int row, Map<Integer, Float> scores) {
+            clearNeighbors(row);
+            scores.forEach((other, score) -> offer(row, bookIds[other], score));
+        }
+
+        void replaceVector(int row, SparseVector vector) {
+            vectors[row] = vector;
+            for (int term : vector.terms) {
+                addedPostings.computeIfAbsent(term, t -> new ArrayList<>()).add(row);
+            }
+        }
+
+        // Rows that contained any term of the given vectors when they were indexed
+        Set<Integer> candidates(SparseVector first, SparseVector second) {
+            Set<Integer> rows = new LinkedHashSet<>();
+            for (SparseVector vector : new SparseVector[]{first, second}) {
+                if (vector == null) {
+                    continue;
+                }
+                for (int term : vector.terms) {
+                    if (term + 1 < postings.offsets.length) {
+                        for (int p = postings.offsets[term]; p < postings.offsets[term + 1]; p++) {
+                            rows.add(postings.rows[p]);
+                        }
+                    }
+                    rows.addAll(addedPostings.getOrDefault(term, List.of()));
+                }
+            }
+            return rows;
+        }
+
+        // Scores of one row against every row it shares a term with, using current vectors
+        Map<Integer, Float> score(int row) {
+            SparseVector vector = vectors[row];
+            Map<Integer, Float> scores = new HashMap<>();
+            for (int other : candidates(vector, null)) {
+                if (other != row && vectors[other] != null) {
+                    float score = vector.dot(vectors[other]);
+                    if (score > 0) {
+                        scores.put(other, score);
+                    }
+                }
+            }
+            return scores;
+        }
+
+        // Inserts or re-scores a candidate in a row's descending top-k list
+        void offer(int row, int bookId, float score) {
+            int base = row * k;
+            int count = neighborCounts[row];
+            for (int i = 0; i < count; i++) {
+                if (neighborIds[base + i] == bookId) {
+                    System.arraycopy(neighborIds, base + i + 1, neighborIds, base + i, count - i - 1);
+                    System.arraycopy(neighborScores, base + i + 1, neighborScores, base + i, count - i - 1);
+                    count--;
+                    break;
+                }
+            }
+            if (score > 0 && (count < k || score > neighborScores[base + count - 1])) {
+                int at = Math.min(count, k - 1);
+                while (at > 0 && neighborScores[base + at - 1] < score) {
+                    neighborIds[base + at] = neighborIds[base + at - 1];
+                    neighborScores[base + at] = neighborScores[base + at - 1];
+                    at--;
+                }
+                neighborIds[base + at] = bookId;
+                neighborScores[base + at] = score;
+                count = Math.min(count + 1, k);
+            }
+            neighborCounts[row] = count;
+        }
+
+        boolean contains(int row, int bookId) {
+            for (int i = 0; i < neighborCounts[row]; i++) {
+                if (neighborIds[row * k + i] == bookId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // A full list that loses a member to a lower score may now be missing a better candidate
+        boolean needsRecompute(int row, int bookId, float newScore) {
+            int base = row * k;
+            for (int i = 0; i < neighborCounts[row]; i++) {
+                if (neighborIds[base + i] == bookId) {
+                    return neighborCounts[row] == k && newScore < neighborScores[base + i];
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.Author;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AuthorRepository extends DirectoryRepository<Author> {
+}
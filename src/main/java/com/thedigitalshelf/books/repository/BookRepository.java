@@ -2,15 +2,17 @@ package com.thedigitalshelf.books.repository;
 
 import com.thedigitalshelf.books.entity.Books;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Repository
-public interface BookRepository extends JpaRepository<Books, Integer> {
+public interface BookRepository extends JpaRepository<Books, Integer>, JpaSpecificationExecutor<Books>, BookRepositoryCustom {
     
     @Query("SELECT b FROM Books b WHERE b.title LIKE %:query% OR b.author LIKE %:query% OR b.description LIKE %:query%")
     List<Books> searchBooks(@Param("query") String query);
@@ -18,18 +20,36 @@ public interface BookRepository extends JpaRepository<Books, Integer> {
     List<Books> findByAuthorContainingIgnoreCase(String author);
     
     List<Books> findByRatingGreaterThanEqual(int rating);
+
+    List<Books> findByAuthorId(Integer authorId);
+
+    List<Books> findByCategoryId(Integer categoryId);
     
     @Query("SELECT DISTINCT b.author FROM Books b")
     List<String> findAllAuthors();
     
     @Query("SELECT AVG(b.rating) FROM Books b")
     Double getAverageRating();
+
+    @Query("SELECT SUM(b.rating) AS total, COUNT(b.rating) AS count FROM Books b")
+    RatingTotals getRatingTotals();
     
     List<Books> findByFeaturedTrue();
 
     @Modifying
+    @Transactional
     @Query("UPDATE Books b SET b.views = b.views + 1 WHERE b.id = :id")
     int incrementViews(@Param("id") Integer id);
-}
 
+    // Unlike deleteById, doesn't load the entity first
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Books b WHERE b.id = :id")
+    int deleteBookById(@Param("id") Integer id);
+
+    interface RatingTotals {
+        Long getTotal();
 
+        Long getCount();
+    }
+}
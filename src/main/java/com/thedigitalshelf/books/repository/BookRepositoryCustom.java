@@ -0,0 +1,20 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.dto.BookPatch;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    // Single UPDATE of the supplied fields; returns 0 when the id is unknown or the version no longer matches
+    int patch(Integer id, BookPatch patch, Integer expectedVersion);
+
+    int patchAll(Collection<Integer> ids, BookPatch patch);
+
+    // Locks the rows that exist, patches them and returns their ids
+    List<Integer> patchExisting(Collection<Integer> ids, BookPatch patch);
+
+    // Deletes the rows that exist and returns their ids
+    List<Integer> deleteExisting(Collection<Integer> ids);
+}
@@ -0,0 +1,117 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.dto.BookPatch;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.util.PublishedDateParser;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patch(Integer id, BookPatch patch, Integer expectedVersion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Books> update = cb.createCriteriaUpdate(Books.class);
+        Root<Books> root = update.from(Books.class);
+        applyPatch(cb, update, root, patch);
+
+        if (expectedVersion != null) {
+            update.where(cb.equal(root.get("id"), id), cb.equal(root.get("version"), expectedVersion));
+        } else {
+            update.where(cb.equal(root.get("id"), id));
+        }
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int patchAll(Collection<Integer> ids, BookPatch patch) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Books> update = cb.createCriteriaUpdate(Books.class);
+        Root<Books> root = update.from(Books.class);
+        applyPatch(cb, update, root, patch);
+        update.where(root.get("id").in(ids));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> patchExisting(Collection<Integer> ids, BookPatch patch) {
+        List<Integer> existing = lockExisting(ids);
+        if (!existing.isEmpty()) {
+            patchAll(existing, patch);
+        }
+        return existing;
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> deleteExisting(Collection<Integer> ids) {
+        List<Integer> existing = lockExisting(ids);
+        if (!existing.isEmpty()) {
+            entityManager.createQuery("DELETE FROM Books b WHERE b.id IN :ids")
+                    .setParameter("ids", existing)
+                    .executeUpdate();
+        }
+        return existing;
+    }
+
+    // Ids that are still present, locked until the transaction ends so they can't vanish before the write
+    @SuppressWarnings("unchecked")
+    private List<Integer> lockExisting(Collection<Integer> ids) {
+        List<Number> rows = entityManager.createNativeQuery("SELECT id FROM booksdigital WHERE id IN (:ids) ORDER BY id FOR UPDATE")
+                .setParameter("ids", ids)
+                .getResultList();
+        return rows.stream().map(Number::intValue).toList();
+    }
+
+    private void applyPatch(CriteriaBuilder cb, CriteriaUpdate<Books> update, Root<Books> root, BookPatch patch) {
+        if (patch.getTitle() != null) {
+            update.set(root.<String>get("title"), patch.getTitle());
+        }
+        if (patch.getAuthor() != null) {
+            update.set(root.<String>get("author"), patch.getAuthor());
+        }
+        if (patch.getPublisher() != null) {
+            update.set(root.<String>get("publisher"), patch.getPublisher());
+        }
+        if (patch.getPublishedDate() != null) {
+            update.set(root.<String>get("publishedDate"), patch.getPublishedDate());
+            update.set(root.<LocalDate>get("publishedOn"), PublishedDateParser.parse(patch.getPublishedDate()));
+        }
+        if (patch.getDescription() != null) {
+            update.set(root.<String>get("description"), patch.getDescription());
+        }
+        if (patch.getCategory() != null) {
+            update.set(root.<String>get("category"), patch.getCategory());
+        }
+        if (patch.getImage() != null) {
+            update.set(root.<String>get("image"), patch.getImage());
+        }
+        if (patch.getUrl() != null) {
+            update.set(root.<String>get("url"), patch.getUrl());
+        }
+        if (patch.getRating() != null) {
+            update.set(root.<Integer>get("rating"), patch.getRating());
+        }
+        if (patch.getPrice() != null) {
+            update.set(root.<Float>get("price"), patch.getPrice());
+        }
+        if (patch.getFeatured() != null) {
+            update.set(root.<Boolean>get("featured"), patch.getFeatured());
+        }
+        update.set(root.<Integer>get("version"), cb.sum(root.<Integer>get("version"), 1));
+    }
+}
@@ -0,0 +1,62 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.Books;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Criteria equivalents of the BookRepository finders, combinable with date ranges and sorting
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Books> all() {
+        return (root, query, cb) -> cb.conjunction();
+    }
+
+    public static Specification<Books> matches(String text) {
+        String pattern = "%" + text + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(root.get("title"), pattern),
+                cb.like(root.get("author"), pattern),
+                cb.like(root.get("description"), pattern));
+    }
+
+    public static Specification<Books> authorContains(String author) {
+        String pattern = "%" + author.toLowerCase(Locale.ROOT) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get("author")), pattern);
+    }
+
+    public static Specification<Books> authorIdIs(int authorId) {
+        return (root, query, cb) -> cb.equal(root.get("authorId"), authorId);
+    }
+
+    public static Specification<Books> categoryIdIs(int categoryId) {
+        return (root, query, cb) -> cb.equal(root.get("categoryId"), categoryId);
+    }
+
+    public static Specification<Books> ratingAtLeast(int rating) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("rating"), rating);
+    }
+
+    public static Specification<Books> featured() {
+        return (root, query, cb) -> cb.isTrue(root.get("featured"));
+    }
+
+    public static Specification<Books> publishedBetween(LocalDate from, LocalDate to) {
+        return (root, query, cb) -> {
+            if (from != null && to != null) {
+                return cb.between(root.get("publishedOn"), from, to);
+            }
+            if (from != null) {
+                return cb.greaterThanOrEqualTo(root.get("publishedOn"), from);
+            }
+            if (to != null) {
+                return cb.lessThanOrEqualTo(root.get("publishedOn"), to);
+            }
+            return cb.conjunction();
+        };
+    }
+}
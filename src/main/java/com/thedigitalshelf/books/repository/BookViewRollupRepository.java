@@ -0,0 +1,15 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.analytics.ViewGranularity;
+import com.thedigitalshelf.books.entity.BookViewRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface BookViewRollupRepository extends JpaRepository<BookViewRollup, Long> {
+    List<BookViewRollup> findByBookIdAndGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStart(
+            int bookId, ViewGranularity granularity, Instant from, Instant to);
+}
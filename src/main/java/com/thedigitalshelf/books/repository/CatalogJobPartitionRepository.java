@@ -0,0 +1,39 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.CatalogJobPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface CatalogJobPartitionRepository extends JpaRepository<CatalogJobPartition, Long> {
+    List<CatalogJobPartition> findByJobIdOrderById(Long jobId);
+
+    long countByJobIdAndDoneFalse(Long jobId);
+
+    // Succeeds for unowned partitions, the caller's own, and those whose owner let the lease run out
+    @Modifying
+    @Transactional
+    @Query("UPDATE CatalogJobPartition p SET p.owner = :owner, p.leaseUntil = :leaseUntil WHERE p.id = :id AND p.done = false " +
+            "AND (p.owner IS NULL OR p.owner = :owner OR p.leaseUntil < :now)")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") Instant now, @Param("leaseUntil") Instant leaseUntil);
+
+    // Also renews the lease; 0 means another instance has taken the partition over
+    @Modifying
+    @Transactional
+    @Query("UPDATE CatalogJobPartition p SET p.lastId = :lastId, p.done = :done, p.leaseUntil = :leaseUntil " +
+            "WHERE p.id = :id AND p.owner = :owner")
+    int checkpoint(@Param("id") Long id, @Param("owner") String owner, @Param("lastId") int lastId,
+                   @Param("done") boolean done, @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CatalogJobPartition p SET p.owner = NULL, p.leaseUntil = NULL WHERE p.owner = :owner AND p.done = false")
+    int releaseAll(@Param("owner") String owner);
+}
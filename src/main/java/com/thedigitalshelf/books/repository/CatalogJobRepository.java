@@ -0,0 +1,45 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.CatalogJob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CatalogJobRepository extends JpaRepository<CatalogJob, Long> {
+    List<CatalogJob> findByStatusIn(Collection<CatalogJob.Status> statuses);
+
+    List<CatalogJob> findAllByOrderByIdDesc(Limit limit);
+
+    @Query("SELECT j.status FROM CatalogJob j WHERE j.id = :id")
+    Optional<CatalogJob.Status> findStatusById(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CatalogJob j SET j.status = com.thedigitalshelf.books.entity.CatalogJob.Status.RUNNING, j.startedAt = :startedAt " +
+            "WHERE j.id = :id AND j.status = com.thedigitalshelf.books.entity.CatalogJob.Status.PENDING")
+    int markStarted(@Param("id") Long id, @Param("startedAt") Instant startedAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CatalogJob j SET j.processed = j.processed + :count WHERE j.id = :id")
+    int addProcessed(@Param("id") Long id, @Param("count") long count);
+
+    // Only moves jobs that haven't finished, so a cancel is never overwritten by a late completion
+    @Modifying
+    @Transactional
+    @Query("UPDATE CatalogJob j SET j.status = :status, j.finishedAt = :finishedAt, j.error = :error " +
+            "WHERE j.id = :id AND j.status IN (com.thedigitalshelf.books.entity.CatalogJob.Status.PENDING, " +
+            "com.thedigitalshelf.books.entity.CatalogJob.Status.RUNNING)")
+    int finish(@Param("id") Long id, @Param("status") CatalogJob.Status status,
+               @Param("finishedAt") Instant finishedAt, @Param("error") String error);
+}
@@ -0,0 +1,8 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.Category;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CategoryRepository extends DirectoryRepository<Category> {
+}
@@ -0,0 +1,23 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.DirectoryEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+// Shared queries of the author and category tables; both walk the unique name_key index
+@NoRepositoryBean
+public interface DirectoryRepository<T extends DirectoryEntry> extends JpaRepository<T, Integer> {
+
+    // Entries in use whose key starts with 'prefix' (a LIKE pattern escaped with '!') and sorts after 'after'
+    @Query("SELECT d FROM #{#entityName} d WHERE d.nameKey > :after AND d.nameKey LIKE :prefix ESCAPE '!' " +
+            "AND d.bookCount > 0 ORDER BY d.nameKey")
+    List<T> findPage(@Param("after") String after, @Param("prefix") String prefix, Limit limit);
+
+    @Query("SELECT d.name FROM #{#entityName} d WHERE d.bookCount > 0 ORDER BY d.nameKey")
+    List<String> findNamesInUse();
+}
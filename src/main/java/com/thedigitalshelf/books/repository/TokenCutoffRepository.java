@@ -0,0 +1,24 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.TokenCutoff;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenCutoffRepository extends JpaRepository<TokenCutoff, String> {
+    List<TokenCutoff> findByExpiresAtAfter(Instant now);
+
+    List<TokenCutoff> findByCreatedAtAfter(Instant since);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TokenCutoff t WHERE t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
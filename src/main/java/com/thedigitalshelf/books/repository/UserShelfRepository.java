@@ -0,0 +1,9 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.UserShelf;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserShelfRepository extends JpaRepository<UserShelf, Long> {
+}
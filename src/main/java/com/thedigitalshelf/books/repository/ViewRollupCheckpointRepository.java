@@ -0,0 +1,9 @@
+package com.thedigitalshelf.books.repository;
+
+import com.thedigitalshelf.books.entity.ViewRollupCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ViewRollupCheckpointRepository extends JpaRepository<ViewRollupCheckpoint, String> {
+}
@@ -1,5 +1,6 @@
 package com.thedigitalshelf.books.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,12 +19,18 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    // Parsed claims of a valid, unrevoked token, for handlers that need more than the username
+    public static final String CLAIMS_ATTRIBUTE = "com.thedigitalshelf.books.security.JwtAuthenticationFilter.claims";
+
     @Autowired
     private JwtUtil jwtUtil;
 
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenRevocationService revocationService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -31,14 +38,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String authorizationHeader = request.getHeader("Authorization");
 
         String username = null;
-        String jwt = null;
+        Claims claims = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
+                claims = jwtUtil.parseClaims(authorizationHeader.substring(7));
+                if (revocationService.isRevoked(claims)) {
+                    logger.debug("Rejected revoked JWT token");
+                } else {
+                    username = claims.getSubject();
+                }
             } catch (Exception e) {
-                logger.warn("Invalid JWT token: " + e.getMessage());
+                // Expired and malformed tokens are routine and already answered with a 401
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Invalid JWT token: " + e.getMessage());
+                }
             }
         }
 
@@ -46,7 +60,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             try {
                 UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
 
-                if (jwtUtil.validateToken(jwt, userDetails)) {
+                if (jwtUtil.validateToken(claims, userDetails)) {
+                    request.setAttribute(CLAIMS_ATTRIBUTE, claims);
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
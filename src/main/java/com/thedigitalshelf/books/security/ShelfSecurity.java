@@ -37,10 +37,14 @@ public class ShelfSecurity {
                 .requestMatchers("/api/books/authors").permitAll() // Allow public access to authors
                 .requestMatchers("/api/books/stats/**").permitAll() // Allow public access to stats
                 .requestMatchers("/api/books/featured").permitAll() // Allow public access to featured books
+                .requestMatchers("/api/books/changes").permitAll() // Allow public access to the catalog change feed
                 .requestMatchers("/api/books/{id}").authenticated() // Require authentication for individual book details
                 .requestMatchers("/api/books/author/{author}").permitAll() // Allow public access to books by author
                 .requestMatchers("/api/books/rating/{minRating}").permitAll() // Allow public access to books by rating
+                .requestMatchers("/api/authors/**", "/api/categories/**").permitAll() // Allow public access to the directories
                 .requestMatchers("/api/books/**").authenticated() // Require authentication for other book operations (POST, PUT, DELETE)
+                .requestMatchers("/api/shelf/**").authenticated() // Shelves belong to the logged-in user
+                .requestMatchers("/api/admin/**").hasRole("ADMIN") // Bulk catalog jobs
                 .requestMatchers("/login.html", "/static/**").permitAll()
                 .requestMatchers("/").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
@@ -67,7 +71,7 @@ public class ShelfSecurity {
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(java.util.Arrays.asList("*"));
-        configuration.setAllowedMethods(java.util.Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(java.util.Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(java.util.Arrays.asList("*"));
         configuration.setAllowCredentials(true);
         
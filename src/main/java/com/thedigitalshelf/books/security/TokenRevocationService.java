@@ -0,0 +1,212 @@
+package com.thedigitalshelf.books.security;
+
+import com.thedigitalshelf.books.entity.RevokedToken;
+import com.thedigitalshelf.books.entity.TokenCutoff;
+import com.thedigitalshelf.books.repository.RevokedTokenRepository;
+import com.thedigitalshelf.books.repository.TokenCutoffRepository;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Denylist for issued JWTs. Single tokens are revoked by jti and "log out everywhere" stores a
+ * per-user cutoff in milliseconds. Checks never touch the database: a Bloom filter rules out
+ * almost every jti and the exact set settles the rest. Revocations are written through to the
+ * database, loaded in full at startup and pruned once the tokens they cover have expired. Every
+ * refresh interval only rows written since the newest one already seen (less a small overlap for
+ * clock skew and late commits) are fetched, so revocations made on other instances apply here
+ * within that interval without rescanning the tables.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    @Value("${jwt.expiration:86400000}")
+    private long jwtExpiration;
+
+    @Value("${jwt.revocation.bloom-capacity:10000}")
+    private int bloomCapacity;
+
+    @Value("${jwt.revocation.bloom-false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${jwt.revocation.prune-interval-ms:600000}")
+    private long pruneIntervalMs;
+
+    @Value("${jwt.revocation.refresh-interval-ms:5000}")
+    private long refreshIntervalMs;
+
+    @Value("${jwt.revocation.refresh-overlap-ms:30000}")
+    private long refreshOverlapMs;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private TokenCutoffRepository tokenCutoffRepository;
+
+    // jti -> expiry in epoch millis
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    // username -> tokens issued at or before this epoch millisecond are revoked
+    private final ConcurrentHashMap<String, Long> cutoffs = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    // Newest created_at loaded so far
+    private volatile Instant watermark = Instant.EPOCH;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void start() {
+        rebuildFilter();
+        load();
+        if (!revoked.isEmpty() || !cutoffs.isEmpty()) {
+            log.info("Loaded {} revoked token(s) and {} user cutoff(s)", revoked.size(), cutoffs.size());
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-revocation-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::safePrune, pruneIntervalMs, pruneIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::safeRefresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isRevoked(Claims claims) {
+        String jti = claims.getId();
+        if (jti != null && filter.mightContain(jti) && revoked.containsKey(jti)) {
+            return true;
+        }
+        Long cutoff = cutoffs.get(claims.getSubject());
+        if (cutoff == null) {
+            return false;
+        }
+        Long issuedAt = claims.get(JwtUtil.ISSUED_AT_MILLIS_CLAIM, Long.class);
+        if (issuedAt == null) {
+            // Older tokens only carry iat, in whole seconds; one from the cutoff second itself counts as revoked
+            return claims.getIssuedAt() == null || claims.getIssuedAt().getTime() <= cutoff;
+        }
+        return issuedAt <= cutoff;
+    }
+
+    public void revoke(Claims claims) {
+        String jti = claims.getId();
+        if (jti == null) {
+            // Tokens issued before jti was added can only be revoked with their user
+            revokeAll(claims.getSubject());
+            return;
+        }
+        Date expiration = claims.getExpiration();
+        Instant expiresAt = expiration != null ? expiration.toInstant() : Instant.now().plusMillis(jwtExpiration);
+        revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+        remember(jti, expiresAt.toEpochMilli());
+    }
+
+    public void revokeAll(String username) {
+        Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+        tokenCutoffRepository.save(new TokenCutoff(username, now, now.plusMillis(jwtExpiration)));
+        cutoffs.merge(username, now.toEpochMilli(), Math::max);
+    }
+
+    // Picks up revocations made by other instances sharing the database
+    public synchronized void refresh() {
+        Instant since = watermark.minusMillis(refreshOverlapMs);
+        apply(revokedTokenRepository.findByCreatedAtAfter(since), tokenCutoffRepository.findByCreatedAtAfter(since));
+    }
+
+    private synchronized void load() {
+        Instant now = Instant.now();
+        watermark = now;
+        apply(revokedTokenRepository.findByExpiresAtAfter(now), tokenCutoffRepository.findByExpiresAtAfter(now));
+    }
+
+    private void apply(List<RevokedToken> tokens, List<TokenCutoff> userCutoffs) {
+        Instant newest = watermark;
+        long now = System.currentTimeMillis();
+        for (RevokedToken token : tokens) {
+            if (token.getExpiresAt().toEpochMilli() > now && !revoked.containsKey(token.getJti())) {
+                remember(token.getJti(), token.getExpiresAt().toEpochMilli());
+            }
+            newest = later(newest, token.getCreatedAt());
+        }
+        for (TokenCutoff cutoff : userCutoffs) {
+            if (cutoff.getExpiresAt().toEpochMilli() > now) {
+                cutoffs.merge(cutoff.getUsername(), cutoff.getIssuedBefore().toEpochMilli(), Math::max);
+            }
+            newest = later(newest, cutoff.getCreatedAt());
+        }
+        watermark = newest;
+    }
+
+    private static Instant later(Instant current, Instant candidate) {
+        return candidate != null && candidate.isAfter(current) ? candidate : current;
+    }
+
+    public void prune() {
+        Instant now = Instant.now();
+        int removedTokens = revokedTokenRepository.deleteExpired(now);
+        int removedCutoffs = tokenCutoffRepository.deleteExpired(now);
+        long nowMillis = now.toEpochMilli();
+        boolean changed = revoked.values().removeIf(expiresAt -> expiresAt <= nowMillis);
+        // A cutoff outlives every token it covers by at most one token lifetime
+        cutoffs.values().removeIf(cutoff -> cutoff + jwtExpiration <= nowMillis);
+        if (changed) {
+            rebuildFilter();
+        }
+        if (removedTokens > 0 || removedCutoffs > 0) {
+            log.debug("Pruned {} expired revoked token(s) and {} user cutoff(s)", removedTokens, removedCutoffs);
+        }
+    }
+
+    private void remember(String jti, long expiresAt) {
+        revoked.put(jti, expiresAt);
+        BloomFilter current = filter;
+        current.add(jti);
+        if (revoked.size() > current.getCapacity()) {
+            rebuildFilter();
+        }
+    }
+
+    // Entries can't be removed from a Bloom filter, so pruning or growth means a fresh one
+    private synchronized void rebuildFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(bloomCapacity, revoked.size() * 2), falsePositiveRate);
+        revoked.keySet().forEach(rebuilt::add);
+        filter = rebuilt;
+        // Catch jtis revoked while the new filter was being filled
+        revoked.keySet().forEach(rebuilt::add);
+    }
+
+    private void safeRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Token revocation refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private void safePrune() {
+        try {
+            prune();
+        } catch (Exception e) {
+            log.warn("Token revocation pruning failed: {}", e.getMessage());
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.thedigitalshelf.books.dto.AuthResponse;
 import com.thedigitalshelf.books.entity.User;
 import com.thedigitalshelf.books.repository.UserRepository;
 import com.thedigitalshelf.books.security.JwtUtil;
+import com.thedigitalshelf.books.security.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -28,6 +30,9 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
 
+    @Autowired
+    private TokenRevocationService revocationService;
+
     public AuthResponse register(AuthRequest request) {
         // Check if username already exists
         if (userRepository.existsByUsername(request.getUsername())) {
@@ -68,6 +73,13 @@ public class AuthService {
             return new AuthResponse("Invalid username or password");
         }
     }
-}
 
+    public void logout(Claims claims) {
+        revocationService.revoke(claims);
+    }
 
+    // Revokes every token issued to the user so far, including the one making the request
+    public void logoutAll(String username) {
+        revocationService.revokeAll(username);
+    }
+}
@@ -1,13 +1,37 @@
 package com.thedigitalshelf.books.service;
 
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.dto.BookPatch;
 import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
 import com.thedigitalshelf.books.repository.BookRepository;
+import com.thedigitalshelf.books.repository.BookSpecifications;
+import com.thedigitalshelf.books.sharding.BookShards;
+import com.thedigitalshelf.books.util.PublishedDateParser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class BookService {
@@ -15,56 +39,329 @@ public class BookService {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private RequestCoalescer coalescer;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BookShards shards;
+
+    @Autowired
+    private CatalogDirectory directory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${books.list.max-limit:500}")
+    private int maxListLimit;
+
     public List<Books> getAllBooks() {
-        return bookRepository.findAll();
+        return coalescer.execute("all", () -> gather(bookRepository::findAll), BookService::copies);
     }
 
     public Optional<Books> getBookById(Integer id) {
-        return bookRepository.findById(id);
+        return coalescer.execute("book:" + id, () -> shards.onShard(shards.shardOf(id), () -> bookRepository.findById(id)), book -> book.map(Books::new));
+    }
+
+    public BookBatchResponse getBooksByIds(List<Integer> ids) {
+        // One IN query per shard holding any of the distinct ids, then re-assembled in the caller's order
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        Map<Integer, List<Integer>> byShard = shards.groupByShard(distinctIds);
+        Map<Integer, Books> found = new HashMap<>();
+        for (List<Books> shardBooks : shards.scatter(byShard.keySet(), shard -> bookRepository.findAllById(byShard.get(shard)))) {
+            for (Books book : shardBooks) {
+                found.put(book.getId(), book);
+            }
+        }
+
+        List<Books> books = new ArrayList<>(found.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            Books book = found.get(id);
+            if (book != null) {
+                books.add(book);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BookBatchResponse(books, missing);
     }
 
     public List<Books> searchBooks(String query) {
         if (query == null || query.trim().isEmpty()) {
             return getAllBooks();
         }
-        return bookRepository.searchBooks(query.trim());
+        String normalized = query.trim();
+        return coalescer.execute("search:" + normalized, () -> gather(() -> bookRepository.searchBooks(normalized)), BookService::copies);
     }
 
     public List<Books> getBooksByAuthor(String author) {
-        return bookRepository.findByAuthorContainingIgnoreCase(author);
+        String key = "author:" + (author == null ? "" : author.toLowerCase(Locale.ROOT));
+        return coalescer.execute(key, () -> gather(() -> bookRepository.findByAuthorContainingIgnoreCase(author)), BookService::copies);
     }
 
     public List<Books> getBooksByRating(int minRating) {
-        return bookRepository.findByRatingGreaterThanEqual(minRating);
+        return coalescer.execute("rating:" + minRating, () -> gather(() -> bookRepository.findByRatingGreaterThanEqual(minRating)), BookService::copies);
+    }
+
+    public List<Books> getAllBooks(BookListOptions options) {
+        if (options.isEmpty()) {
+            return getAllBooks();
+        }
+        return listBooks("all", BookSpecifications.all(), options);
+    }
+
+    public List<Books> searchBooks(String query, BookListOptions options) {
+        if (options.isEmpty()) {
+            return searchBooks(query);
+        }
+        if (query == null || query.trim().isEmpty()) {
+            return getAllBooks(options);
+        }
+        String normalized = query.trim();
+        return listBooks("search:" + normalized, BookSpecifications.matches(normalized), options);
+    }
+
+    public List<Books> getBooksByAuthor(String author, BookListOptions options) {
+        if (options.isEmpty()) {
+            return getBooksByAuthor(author);
+        }
+        return listBooks("author:" + author.toLowerCase(Locale.ROOT), BookSpecifications.authorContains(author), options);
+    }
+
+    public List<Books> getBooksByRating(int minRating, BookListOptions options) {
+        if (options.isEmpty()) {
+            return getBooksByRating(minRating);
+        }
+        return listBooks("rating:" + minRating, BookSpecifications.ratingAtLeast(minRating), options);
+    }
+
+    public List<Books> getBooksByAuthorId(int authorId, BookListOptions options) {
+        if (options.isEmpty()) {
+            return coalescer.execute("author-id:" + authorId, () -> gather(() -> bookRepository.findByAuthorId(authorId)), BookService::copies);
+        }
+        return listBooks("author-id:" + authorId, BookSpecifications.authorIdIs(authorId), options);
+    }
+
+    public List<Books> getBooksByCategoryId(int categoryId, BookListOptions options) {
+        if (options.isEmpty()) {
+            return coalescer.execute("category-id:" + categoryId, () -> gather(() -> bookRepository.findByCategoryId(categoryId)), BookService::copies);
+        }
+        return listBooks("category-id:" + categoryId, BookSpecifications.categoryIdIs(categoryId), options);
+    }
+
+    public List<Books> getFeaturedBooks(BookListOptions options) {
+        if (options.isEmpty()) {
+            return getFeaturedBooks();
+        }
+        return listBooks("featured", BookSpecifications.featured(), options);
+    }
+
+    // Filtered lists are always ORDER BY an indexed column; only a requested limit (capped at max-limit) truncates them
+    private List<Books> listBooks(String key, Specification<Books> filter, BookListOptions options) {
+        Sort sort = toSort(options);
+        Integer limit = options.getLimit() == null ? null : Math.max(1, Math.min(options.getLimit(), maxListLimit));
+        Specification<Books> spec = filter.and(BookSpecifications.publishedBetween(options.getPublishedFrom(), options.getPublishedTo()));
+        return coalescer.execute("list:" + key + ":" + options.key(), () -> {
+            List<Books> books = gather(() -> bookRepository.findBy(spec,
+                    query -> limit == null ? query.sortBy(sort).all() : query.sortBy(sort).limit(limit).all()));
+            if (!shards.isSharded()) {
+                return books;
+            }
+            // Each shard returned its own top 'limit'; merge them into the global top 'limit'
+            books.sort(comparatorFor(sort));
+            return limit != null && books.size() > limit ? new ArrayList<>(books.subList(0, limit)) : books;
+        }, BookService::copies);
+    }
+
+    private static Comparator<Books> comparatorFor(Sort sort) {
+        Comparator<Books> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Books> next = switch (order.getProperty()) {
+                case "publishedOn" -> by(Books::getPublishedOn, order);
+                case "rating" -> by(Books::getRating, order);
+                case "price" -> by(Books::getPrice, order);
+                case "views" -> by(Books::getViews, order);
+                default -> by(Books::getId, order);
+            };
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    // Matches the database ordering: nulls last in either direction
+    private static <T extends Comparable<? super T>> Comparator<Books> by(Function<Books, T> key, Sort.Order order) {
+        Comparator<T> natural = Comparator.naturalOrder();
+        return Comparator.comparing(key, Comparator.nullsLast(order.isAscending() ? natural : natural.reversed()));
+    }
+
+    private <T> List<T> gather(Supplier<List<T>> query) {
+        List<T> merged = new ArrayList<>();
+        for (List<T> shardResult : shards.scatter(query)) {
+            merged.addAll(shardResult);
+        }
+        return merged;
+    }
+
+    // Requests that shared a coalesced query each get their own books, so one changing them can't affect another
+    private static List<Books> copies(List<Books> books) {
+        List<Books> copies = new ArrayList<>(books.size());
+        for (Books book : books) {
+            copies.add(new Books(book));
+        }
+        return copies;
+    }
+
+    private Sort toSort(BookListOptions options) {
+        Sort.Direction direction = Sort.Direction.DESC;
+        if (options.getDirection() != null) {
+            direction = Sort.Direction.fromOptionalString(options.getDirection())
+                    .orElseThrow(() -> new IllegalArgumentException("Direction must be asc or desc"));
+        }
+        if (options.getSort() == null) {
+            return Sort.by(direction, "id");
+        }
+        String property = switch (options.getSort()) {
+            case "publishedDate" -> "publishedOn";
+            case "rating", "price", "views" -> options.getSort();
+            default -> throw new IllegalArgumentException("Sort must be one of publishedDate, rating, price, views");
+        };
+        return Sort.by(new Sort.Order(direction, property), new Sort.Order(direction, "id"));
     }
 
     public List<String> getAllAuthors() {
-        return bookRepository.findAllAuthors();
+        // Until the startup backfill has filled the directory, fall back to scanning the books
+        if (directory.isReady()) {
+            return coalescer.execute("authors", directory::authorNames, ArrayList::new);
+        }
+        return coalescer.execute("authors", () -> new ArrayList<>(new LinkedHashSet<>(gather(bookRepository::findAllAuthors))), ArrayList::new);
     }
 
     public Double getAverageRating() {
-        return bookRepository.getAverageRating();
+        // Sums and counts rather than averages, so the shards combine exactly
+        return coalescer.execute("average-rating", () -> {
+            double total = 0;
+            long count = 0;
+            for (BookRepository.RatingTotals totals : shards.scatter(bookRepository::getRatingTotals)) {
+                total += totals.getTotal() == null ? 0 : totals.getTotal();
+                count += totals.getCount() == null ? 0 : totals.getCount();
+            }
+            return count == 0 ? null : total / count;
+        });
     }
 
     public Books saveBook(Books book) {
-        return bookRepository.save(book);
+        boolean created = book.getId() == 0;
+        int shard = created ? shards.placementFor(book) : shards.shardOf(book.getId());
+        if (created) {
+            directory.assign(book);
+        }
+        Books saved = shards.onShard(shard, () -> bookRepository.save(book));
+        if (created) {
+            directory.created(saved);
+        } else {
+            CatalogDirectory.Assignment assignment = directory.updated(shard, List.of(saved.getId())).get(saved.getId());
+            if (assignment != null) {
+                saved.setAuthorId(assignment.authorId());
+                saved.setCategoryId(assignment.categoryId());
+            }
+        }
+        eventPublisher.publishEvent(new CatalogChangeEvent(
+                created ? CatalogChangeEvent.Type.CREATED : CatalogChangeEvent.Type.UPDATED, saved.getId()));
+        return saved;
     }
 
-    public void deleteBook(Integer id) {
-        bookRepository.deleteById(id);
+    public int patchBook(Integer id, BookPatch patch) {
+        int shard = shards.shardOf(id);
+        int updated = shards.onShard(shard, () -> bookRepository.patch(id, patch, patch.getVersion()));
+        if (updated > 0 && movesInDirectory(patch)) {
+            directory.updated(shard, List.of(id));
+        }
+        if (updated > 0) {
+            eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeEvent.Type.UPDATED, id));
+        }
+        return updated;
+    }
+
+    public int patchBooks(Collection<Integer> ids, BookPatch patch) {
+        Map<Integer, List<Integer>> byShard = shards.groupByShard(new LinkedHashSet<>(ids));
+        int updated = 0;
+        // Only ids that still exist get an event
+        for (Map.Entry<Integer, List<Integer>> patched : shards.scatter(byShard.keySet(),
+                shard -> Map.entry(shard, bookRepository.patchExisting(byShard.get(shard), patch)))) {
+            if (!patched.getValue().isEmpty() && movesInDirectory(patch)) {
+                directory.updated(patched.getKey(), patched.getValue());
+            }
+            for (Integer id : patched.getValue()) {
+                eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeEvent.Type.UPDATED, id));
+            }
+            updated += patched.getValue().size();
+        }
+        return updated;
+    }
+
+    private static boolean movesInDirectory(BookPatch patch) {
+        return patch.getAuthor() != null || patch.getCategory() != null;
+    }
+
+    public boolean existsById(Integer id) {
+        return shards.onShard(shards.shardOf(id), () -> bookRepository.existsById(id));
+    }
+
+    public boolean deleteBook(Integer id) {
+        if (shards.onShard(shards.shardOf(id), () -> bookRepository.deleteBookById(id)) == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeEvent.Type.DELETED, id));
+        return true;
+    }
+
+    public int deleteBooks(Collection<Integer> ids) {
+        Map<Integer, List<Integer>> byShard = shards.groupByShard(new LinkedHashSet<>(ids));
+        int deleted = 0;
+        for (List<Integer> shardDeleted : shards.scatter(byShard.keySet(), shard -> bookRepository.deleteExisting(byShard.get(shard)))) {
+            for (Integer id : shardDeleted) {
+                eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeEvent.Type.DELETED, id));
+            }
+            deleted += shardDeleted.size();
+        }
+        return deleted;
+    }
+
+    // Re-derives published_on and the directory ids of books on one shard from their stored text
+    public void recomputeDerived(int shard, Map<Integer, String> publishedDates) {
+        if (publishedDates.isEmpty()) {
+            return;
+        }
+        List<Object[]> dates = new ArrayList<>(publishedDates.size());
+        publishedDates.forEach((id, text) -> {
+            LocalDate date = PublishedDateParser.parse(text);
+            dates.add(new Object[]{date != null ? Date.valueOf(date) : null, id});
+        });
+        shards.onShard(shard, () -> jdbcTemplate.batchUpdate("UPDATE booksdigital SET published_on = ? WHERE id = ?",
+                dates, new int[]{Types.DATE, Types.INTEGER}));
+        directory.updated(shard, publishedDates.keySet());
+        for (Integer id : publishedDates.keySet()) {
+            eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeEvent.Type.UPDATED, id));
+        }
     }
 
     public long getTotalBooks() {
-        return bookRepository.count();
+        return coalescer.execute("total", () -> shards.scatter(bookRepository::count).stream().mapToLong(Long::longValue).sum());
     }
     
     public List<Books> getFeaturedBooks() {
-        return bookRepository.findByFeaturedTrue();
+        return coalescer.execute("featured", () -> gather(bookRepository::findByFeaturedTrue), BookService::copies);
     }
 
-    @Transactional
     public int incrementViews(Integer id) {
-        return bookRepository.incrementViews(id);
+        int updated = shards.onShard(shards.shardOf(id), () -> bookRepository.incrementViews(id));
+        if (updated > 0) {
+            eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, id));
+        }
+        return updated;
     }
 }
 
@@ -0,0 +1,264 @@
+package com.thedigitalshelf.books.service;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events feed of catalog changes. Events are kept in a ring buffer for
+ * Last-Event-ID resume; each subscriber has a small bounded queue that drops its oldest
+ * entries when the client can't keep up. View increments are coalesced into periodic deltas.
+ */
+@Service
+public class CatalogChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogChangeFeed.class);
+
+    // Marker queued to keep idle connections alive; never stored in the ring
+    private static final Change HEARTBEAT = new Change(0, "heartbeat", 0, 0, 0);
+
+    // parseEventId result for an id this process didn't hand out (restart, or another instance)
+    private static final long FOREIGN_ID = -2;
+
+    @Value("${books.changes.replay-size:1024}")
+    private int replaySize;
+
+    @Value("${books.changes.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    @Value("${books.changes.views-flush-ms:1000}")
+    private long viewsFlushMs;
+
+    @Value("${books.changes.heartbeat-ms:25000}")
+    private long heartbeatMs;
+
+    @Value("${books.changes.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, Integer> pendingViews = new ConcurrentHashMap<>();
+
+    // Event ids are "<epoch>-<sequence>"; the epoch changes on every start, since sequences restart at 1
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private Change[] ring;
+    private long lastId;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService senders;
+
+    @PostConstruct
+    void start() {
+        ring = new Change[replaySize];
+        AtomicInteger threads = new AtomicInteger();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "catalog-feed-scheduler"));
+        senders = Executors.newFixedThreadPool(2, r -> daemon(r, "catalog-feed-sender-" + threads.incrementAndGet()));
+        scheduler.scheduleWithFixedDelay(this::flushViews, viewsFlushMs, viewsFlushMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case VIEWED -> pendingViews.merge(event.getBookId(), 1, Integer::sum);
+            case CREATED -> publish("created", event.getBookId(), 0);
+            case UPDATED -> publish("updated", event.getBookId(), 0);
+            case DELETED -> publish("deleted", event.getBookId(), 0);
+        }
+    }
+
+    // Changes from another instance were missed, so clients should refetch rather than trust the feed
+    @EventListener
+    public void onCatalogRefresh(CatalogRefreshEvent event) {
+        publish("reset", 0, 0);
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        long resumeFrom = parseEventId(lastEventId);
+        // Replay and registration happen under the publish lock so no event is missed or sent twice
+        synchronized (this) {
+            if (resumeFrom != -1) {
+                long oldest = Math.max(1, lastId - ring.length + 1);
+                if (resumeFrom == FOREIGN_ID || resumeFrom > lastId || resumeFrom + 1 < oldest) {
+                    // Unknown or too far behind for the ring buffer: tell the client to refetch instead
+                    subscriber.offer(new Change(lastId, "reset", 0, 0, System.currentTimeMillis()), subscriberBuffer);
+                } else {
+                    for (long id = resumeFrom + 1; id <= lastId; id++) {
+                        subscriber.offer(ring[(int) (id % ring.length)], subscriberBuffer);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        schedule(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void publish(String type, int bookId, int delta) {
+        synchronized (this) {
+            Change change = new Change(++lastId, type, bookId, delta, System.currentTimeMillis());
+            ring[(int) (change.id % ring.length)] = change;
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(change, subscriberBuffer);
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            schedule(subscriber);
+        }
+    }
+
+    private void flushViews() {
+        for (Integer bookId : pendingViews.keySet()) {
+            Integer delta = pendingViews.remove(bookId);
+            if (delta != null) {
+                publish("views", bookId, delta);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT, subscriberBuffer);
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.markScheduled()) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        Change change;
+        while ((change = subscriber.poll()) != null) {
+            try {
+                if (change == HEARTBEAT) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(epoch + "-" + change.id)
+                            .name(change.type)
+                            .data(change.toPayload(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping change feed subscriber: {}", e.getMessage());
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+
+    // -1 when there is nothing to resume, FOREIGN_ID when the id wasn't issued by this process
+    private long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return -1;
+        }
+        String id = lastEventId.trim();
+        if (!id.startsWith(epoch + "-")) {
+            return FOREIGN_ID;
+        }
+        try {
+            long sequence = Long.parseLong(id.substring(epoch.length() + 1));
+            return sequence >= 0 ? sequence : FOREIGN_ID;
+        } catch (NumberFormatException e) {
+            return FOREIGN_ID;
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private record Change(long id, String type, int bookId, int delta, long timestamp) {
+
+        Map<String, Object> toPayload() {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("type", type);
+            if (bookId != 0) {
+                payload.put("bookId", bookId);
+            }
+            if (delta != 0) {
+                payload.put("delta", delta);
+            }
+            payload.put("timestamp", timestamp);
+            return payload;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<Change> queue = new ArrayDeque<>(4);
+        private boolean scheduled;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(Change change, int capacity) {
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+            }
+            queue.addLast(change);
+        }
+
+        synchronized boolean markScheduled() {
+            if (scheduled || queue.isEmpty()) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        synchronized Change poll() {
+            Change change = queue.pollFirst();
+            if (change == null) {
+                scheduled = false;
+            }
+            return change;
+        }
+    }
+}
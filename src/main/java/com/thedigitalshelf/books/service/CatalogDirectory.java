@@ -0,0 +1,427 @@
+package com.thedigitalshelf.books.service;
+
+import com.thedigitalshelf.books.dto.DirectoryPage;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.entity.DirectoryEntry;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.repository.AuthorRepository;
+import com.thedigitalshelf.books.repository.CategoryRepository;
+import com.thedigitalshelf.books.repository.DirectoryRepository;
+import com.thedigitalshelf.books.sharding.BookShards;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Author and category directories: one row per normalized name in the authors and categories
+ * tables, with the number of books carrying it, and the matching ids on each book. Saves and
+ * patches assign the ids and adjust the counts in the same call; the ids are only moved by an
+ * UPDATE conditional on the ids that were read, so of two concurrent updates to one book only
+ * the one that actually moved it adjusts the counts, and the other re-reads and retries.
+ * Deletes only mark the counts stale; they are recounted from the indexed id columns within
+ * books.directory.recount-delay-ms. A full recount also runs every
+ * books.directory.full-recount-interval-ms to correct anything else, such as a crash between a
+ * book update and its count update. Books saved before the columns existed are backfilled at
+ * startup, followed by a full recount.
+ *
+ * The directory tables live on shard 0 with the other non-book tables, and books on every shard
+ * refer to them by id.
+ */
+@Service
+public class CatalogDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogDirectory.class);
+
+    private static final int MAX_NAME_LENGTH = 200;
+    private static final int[] ASSIGNMENT_TYPES = {Types.INTEGER, Types.INTEGER, Types.INTEGER};
+    private static final int[] MOVE_TYPES = {Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER};
+
+    public enum Dimension {
+        AUTHOR("authors", "author_id"),
+        CATEGORY("categories", "category_id");
+
+        private final String table;
+        private final String bookColumn;
+
+        Dimension(String table, String bookColumn) {
+            this.table = table;
+            this.bookColumn = bookColumn;
+        }
+    }
+
+    public record Assignment(Integer authorId, Integer categoryId) {
+    }
+
+    @Value("${books.directory.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${books.directory.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${books.directory.backfill-batch-size:500}")
+    private int batchSize;
+
+    @Value("${books.directory.recount-delay-ms:1000}")
+    private long recountDelayMs;
+
+    @Value("${books.directory.full-recount-interval-ms:3600000}")
+    private long fullRecountIntervalMs;
+
+    @Value("${books.directory.cache-size:50000}")
+    private int cacheSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookShards shards;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    // name key -> directory id; ids never change, so entries only go when the cache is full
+    private final Map<Dimension, ConcurrentHashMap<String, Integer>> ids = new EnumMap<>(Dimension.class);
+    private final AtomicBoolean recountPending = new AtomicBoolean();
+    private volatile boolean ready;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void start() {
+        for (Dimension dimension : Dimension.values()) {
+            ids.put(dimension, new ConcurrentHashMap<>());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-directory-recount");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::recountIfPending, recountDelayMs, recountDelayMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> recountPending.set(true),
+                fullRecountIntervalMs, fullRecountIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        Thread thread = new Thread(this::safeBackfill, "catalog-directory-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        // The instance that deleted the book runs the recount
+        if (event.getType() == CatalogChangeEvent.Type.DELETED && !event.isRemote()) {
+            recountPending.set(true);
+        }
+    }
+
+    // True once every book has its directory ids and the counts have been recounted
+    public boolean isReady() {
+        return ready;
+    }
+
+    public static String key(String name) {
+        if (name == null) {
+            return null;
+        }
+        String key = name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        if (key.length() > MAX_NAME_LENGTH) {
+            key = key.substring(0, MAX_NAME_LENGTH);
+        }
+        return key.isEmpty() ? null : key;
+    }
+
+    // Sets the directory ids on a book that is about to be inserted; counts follow in created()
+    public void assign(Books book) {
+        book.setAuthorId(resolve(Dimension.AUTHOR, book.getAuthor()));
+        book.setCategoryId(resolve(Dimension.CATEGORY, book.getCategory()));
+    }
+
+    public void created(Books book) {
+        Deltas deltas = new Deltas();
+        deltas.move(Dimension.AUTHOR, null, book.getAuthorId());
+        deltas.move(Dimension.CATEGORY, null, book.getCategoryId());
+        deltas.apply();
+    }
+
+    // Re-reads the names of books whose author or category may have changed and moves them between entries
+    public Map<Integer, Assignment> updated(int shard, Collection<Integer> bookIds) {
+        Map<Integer, Assignment> assignments = new HashMap<>();
+        Deltas deltas = new Deltas();
+        List<Integer> pending = new ArrayList<>(bookIds);
+        while (!pending.isEmpty()) {
+            pending = move(shard, pending, assignments, deltas);
+        }
+        deltas.apply();
+        return assignments;
+    }
+
+    // One pass over the books; returns those whose ids changed underneath it and must be read again
+    private List<Integer> move(int shard, List<Integer> bookIds, Map<Integer, Assignment> assignments, Deltas deltas) {
+        String sql = "SELECT id, author, category, author_id, category_id FROM booksdigital WHERE id IN ("
+                + String.join(", ", Collections.nCopies(bookIds.size(), "?")) + ")";
+        List<Map<String, Object>> rows = shards.onShard(shard, () -> jdbcTemplate.queryForList(sql, bookIds.toArray()));
+
+        List<Object[]> changes = new ArrayList<>();
+        List<Integer> changedIds = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            int id = ((Number) row.get("id")).intValue();
+            Integer oldAuthor = intOrNull(row.get("author_id"));
+            Integer oldCategory = intOrNull(row.get("category_id"));
+            Integer author = resolve(Dimension.AUTHOR, (String) row.get("author"));
+            Integer category = resolve(Dimension.CATEGORY, (String) row.get("category"));
+            if (!Objects.equals(author, oldAuthor) || !Objects.equals(category, oldCategory)) {
+                changes.add(new Object[]{author, category, id, oldAuthor, oldCategory});
+                changedIds.add(id);
+            }
+            assignments.put(id, new Assignment(author, category));
+        }
+        if (changes.isEmpty()) {
+            return List.of();
+        }
+
+        int[] moved = shards.onShard(shard, () -> jdbcTemplate.batchUpdate("UPDATE booksdigital SET author_id = ?, category_id = ? "
+                + "WHERE id = ? AND author_id IS NOT DISTINCT FROM ? AND category_id IS NOT DISTINCT FROM ?", changes, MOVE_TYPES));
+        List<Integer> retry = new ArrayList<>();
+        for (int i = 0; i < moved.length; i++) {
+            Object[] change = changes.get(i);
+            if (moved[i] == 0) {
+                retry.add(changedIds.get(i));
+                continue;
+            }
+            deltas.move(Dimension.AUTHOR, (Integer) change[3], (Integer) change[0]);
+            deltas.move(Dimension.CATEGORY, (Integer) change[4], (Integer) change[1]);
+        }
+        return retry;
+    }
+
+    public DirectoryPage page(Dimension dimension, String prefix, String after, Integer limit) {
+        int size = limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+        String prefixKey = key(prefix);
+        String pattern = prefixKey == null ? "%" : prefixKey.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        String afterKey = after == null ? "" : after;
+
+        List<? extends DirectoryEntry> entries = shards.onShard(0,
+                () -> repository(dimension).findPage(afterKey, pattern, Limit.of(size + 1)));
+        if (entries.size() <= size) {
+            return new DirectoryPage(entries, null);
+        }
+        List<? extends DirectoryEntry> page = new ArrayList<>(entries.subList(0, size));
+        return new DirectoryPage(page, page.get(size - 1).getNameKey());
+    }
+
+    public Optional<? extends DirectoryEntry> find(Dimension dimension, int id) {
+        return shards.onShard(0, () -> repository(dimension).findById(id));
+    }
+
+    // Every author with at least one book, alphabetically
+    public List<String> authorNames() {
+        return shards.onShard(0, authorRepository::findNamesInUse);
+    }
+
+    public int backfill() {
+        int[] assigned = new int[1];
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            shards.onShard(shard, () -> backfillShard(assigned));
+        }
+        if (assigned[0] > 0) {
+            log.info("Assigned author and category ids to {} books", assigned[0]);
+        }
+        recount();
+        ready = true;
+        return assigned[0];
+    }
+
+    // Sets every book_count from the id columns
+    public void recount() {
+        for (Dimension dimension : Dimension.values()) {
+            String sql = "SELECT " + dimension.bookColumn + " AS entry_id, COUNT(*) AS books FROM booksdigital WHERE "
+                    + dimension.bookColumn + " IS NOT NULL GROUP BY " + dimension.bookColumn;
+            Map<Integer, Long> counts = new HashMap<>();
+            for (List<Map<String, Object>> rows : shards.scatter(() -> jdbcTemplate.queryForList(sql))) {
+                for (Map<String, Object> row : rows) {
+                    counts.merge(((Number) row.get("entry_id")).intValue(), ((Number) row.get("books")).longValue(), Long::sum);
+                }
+            }
+            shards.onShard(0, () -> storeCounts(dimension, counts));
+        }
+    }
+
+    private Void storeCounts(Dimension dimension, Map<Integer, Long> counts) {
+        String select = "SELECT id, book_count FROM " + dimension.table + " WHERE id > ? ORDER BY id LIMIT ?";
+        int lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(select, lastId, batchSize);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            List<Object[]> updates = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                lastId = ((Number) row.get("id")).intValue();
+                long count = counts.getOrDefault(lastId, 0L);
+                if (((Number) row.get("book_count")).longValue() != count) {
+                    updates.add(new Object[]{count, lastId});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE " + dimension.table + " SET book_count = ? WHERE id = ?", updates);
+            }
+        }
+    }
+
+    // COALESCE keeps ids that a concurrent save assigned after the batch was read
+    private Void backfillShard(int[] assigned) {
+        String select = "SELECT id, author, category FROM booksdigital "
+                + "WHERE id > ? AND (author_id IS NULL OR category_id IS NULL) ORDER BY id LIMIT ?";
+        int lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(select, lastId, batchSize);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                lastId = ((Number) row.get("id")).intValue();
+                Integer author = resolve(Dimension.AUTHOR, (String) row.get("author"));
+                Integer category = resolve(Dimension.CATEGORY, (String) row.get("category"));
+                if (author != null || category != null) {
+                    updates.add(new Object[]{author, category, lastId});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE booksdigital SET author_id = COALESCE(author_id, ?), "
+                        + "category_id = COALESCE(category_id, ?) WHERE id = ?", updates, ASSIGNMENT_TYPES);
+                assigned[0] += updates.size();
+            }
+        }
+    }
+
+    private Integer resolve(Dimension dimension, String name) {
+        String key = key(name);
+        if (key == null) {
+            return null;
+        }
+        ConcurrentHashMap<String, Integer> cached = ids.get(dimension);
+        Integer id = cached.get(key);
+        if (id != null) {
+            return id;
+        }
+        String displayName = name.trim().replaceAll("\\s+", " ");
+        id = shards.onShard(0, () -> findOrInsert(dimension, key,
+                displayName.length() > MAX_NAME_LENGTH ? displayName.substring(0, MAX_NAME_LENGTH) : displayName));
+        if (cached.size() >= cacheSize) {
+            cached.clear();
+        }
+        cached.put(key, id);
+        return id;
+    }
+
+    private Integer findOrInsert(Dimension dimension, String key, String name) {
+        String select = "SELECT id FROM " + dimension.table + " WHERE name_key = ?";
+        List<Integer> found = jdbcTemplate.queryForList(select, Integer.class, key);
+        if (!found.isEmpty()) {
+            return found.get(0);
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO " + dimension.table + " (name, name_key, book_count) VALUES (?, ?, 0)", name, key);
+        } catch (DuplicateKeyException e) {
+            // Another request added the same name first; use its row
+        }
+        return jdbcTemplate.queryForObject(select, Integer.class, key);
+    }
+
+    private DirectoryRepository<? extends DirectoryEntry> repository(Dimension dimension) {
+        return dimension == Dimension.AUTHOR ? authorRepository : categoryRepository;
+    }
+
+    private static Integer intOrNull(Object value) {
+        return value == null ? null : ((Number) value).intValue();
+    }
+
+    private void recountIfPending() {
+        if (!recountPending.getAndSet(false)) {
+            return;
+        }
+        try {
+            recount();
+        } catch (Exception e) {
+            recountPending.set(true);
+            log.warn("Directory recount failed: {}", e.getMessage());
+        }
+    }
+
+    private void safeBackfill() {
+        try {
+            backfill();
+        } catch (Exception e) {
+            log.warn("Directory backfill failed: {}", e.getMessage());
+        }
+    }
+
+    // Net count changes per entry, written as one batch per table
+    private class Deltas {
+        private final Map<Dimension, Map<Integer, Integer>> changes = new EnumMap<>(Dimension.class);
+
+        void move(Dimension dimension, Integer from, Integer to) {
+            if (Objects.equals(from, to)) {
+                return;
+            }
+            Map<Integer, Integer> counts = changes.computeIfAbsent(dimension, d -> new HashMap<>());
+            if (from != null) {
+                counts.merge(from, -1, Integer::sum);
+            }
+            if (to != null) {
+                counts.merge(to, 1, Integer::sum);
+            }
+        }
+
+        void apply() {
+            for (Map.Entry<Dimension, Map<Integer, Integer>> entry : changes.entrySet()) {
+                List<Object[]> updates = new ArrayList<>();
+                entry.getValue().forEach((id, delta) -> {
+                    if (delta != 0) {
+                        updates.add(new Object[]{delta, id});
+                    }
+                });
+                if (!updates.isEmpty()) {
+                    shards.onShard(0, () -> jdbcTemplate.batchUpdate(
+                            "UPDATE " + entry.getKey().table + " SET book_count = book_count + ? WHERE id = ?", updates));
+                }
+            }
+        }
+    }
+}
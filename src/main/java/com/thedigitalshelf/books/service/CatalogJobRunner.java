@@ -0,0 +1,427 @@
+package com.thedigitalshelf.books.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thedigitalshelf.books.dto.BookPatch;
+import com.thedigitalshelf.books.entity.CatalogJob;
+import com.thedigitalshelf.books.entity.CatalogJobPartition;
+import com.thedigitalshelf.books.repository.CatalogJobPartitionRepository;
+import com.thedigitalshelf.books.repository.CatalogJobRepository;
+import com.thedigitalshelf.books.sharding.BookShards;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs bulk catalog jobs in the background. A job's matching id range on each shard is split
+ * into partitions that workers take in parallel; each partition is walked in id order in chunks,
+ * every chunk is applied through BookService in its own short transaction, and the partition's
+ * position is checkpointed afterwards. Chunk operations are idempotent, so a job resumed after a
+ * restart may redo at most one chunk per partition. After each chunk a worker pauses in
+ * proportion to how long the chunk took, keeping the job's share of the database bounded.
+ *
+ * Several instances can share the job tables: an instance only works on partitions it has
+ * claimed, and each checkpoint renews its lease. Partitions of an instance that stopped are
+ * taken over once their lease runs out, and workers re-read the job's status at every
+ * checkpoint so a cancel made on any instance stops them.
+ */
+@Service
+public class CatalogJobRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogJobRunner.class);
+
+    @Value("${books.jobs.workers:2}")
+    private int workerCount;
+
+    @Value("${books.jobs.chunk-size:500}")
+    private int chunkSize;
+
+    // Fraction of wall time a worker may spend running chunks; 1.0 disables throttling
+    @Value("${books.jobs.max-duty-cycle:0.5}")
+    private double maxDutyCycle;
+
+    @Value("${books.jobs.min-pause-ms:10}")
+    private long minPauseMs;
+
+    @Value("${books.jobs.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${books.jobs.instance-id:${books.invalidation.instance-id:}}")
+    private String instanceId;
+
+    @Autowired
+    private CatalogJobRepository jobRepository;
+
+    @Autowired
+    private CatalogJobPartitionRepository partitionRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookShards shards;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ConcurrentHashMap<Long, RunningJob> running = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService workers;
+    private ScheduledExecutorService leaseScanner;
+    private volatile boolean stopping;
+
+    @PostConstruct
+    void start() {
+        if (maxDutyCycle <= 0 || maxDutyCycle > 1) {
+            throw new IllegalStateException("books.jobs.max-duty-cycle must be in (0, 1], not " + maxDutyCycle);
+        }
+        if (instanceId.isBlank()) {
+            instanceId = UUID.randomUUID().toString().substring(0, 8);
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threads = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, workerCount), r -> {
+            Thread thread = new Thread(r, "catalog-job-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseScanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-job-leases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseScanner.scheduleWithFixedDelay(this::safeResume, leaseMs, leaseMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // Interrupted jobs keep their RUNNING status and checkpoints, and resume on the next start
+        stopping = true;
+        leaseScanner.shutdownNow();
+        workers.shutdownNow();
+        if (workers.awaitTermination(5, TimeUnit.SECONDS)) {
+            // Lets any instance pick the partitions up straight away instead of after the lease
+            partitionRepository.releaseAll(instanceId);
+        }
+    }
+
+    // Also runs every lease period to take over partitions whose owner has gone away
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        for (CatalogJob job : jobRepository.findByStatusIn(List.of(CatalogJob.Status.PENDING, CatalogJob.Status.RUNNING))) {
+            int claimed = launch(job);
+            if (claimed > 0) {
+                log.info("Resumed {} partition(s) of catalog job {} ({}, {} of {} done)", claimed, job.getId(), job.getType(),
+                        job.getProcessed(), job.getTotal());
+            }
+        }
+    }
+
+    public CatalogJob submit(CatalogJob.Type type, Integer authorId, Integer categoryId, Boolean featured,
+                             BookPatch patch, String createdBy) {
+        String patchJson = null;
+        if (patch != null) {
+            try {
+                patchJson = objectMapper.writeValueAsString(patch);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid patch: " + e.getOriginalMessage());
+            }
+        }
+        CatalogJob job = new CatalogJob(type, authorId, categoryId, featured, patchJson, createdBy);
+        Filter filter = Filter.of(job);
+
+        // One pass per shard for the size and id range of the matching books
+        List<Map<String, Object>> ranges = shards.scatter(() -> jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS total, MIN(id) AS min_id, MAX(id) AS max_id FROM booksdigital WHERE 1=1" + filter.sql(),
+                filter.args().toArray()));
+        long total = 0;
+        for (Map<String, Object> range : ranges) {
+            total += ((Number) range.get("total")).longValue();
+        }
+        job.setTotal(total);
+        CatalogJob saved = jobRepository.save(job);
+
+        List<CatalogJobPartition> partitions = new ArrayList<>();
+        for (int shard = 0; shard < ranges.size(); shard++) {
+            Map<String, Object> range = ranges.get(shard);
+            if (range.get("min_id") == null) {
+                continue;
+            }
+            int minId = ((Number) range.get("min_id")).intValue();
+            int maxId = ((Number) range.get("max_id")).intValue();
+            int parts = Math.max(1, workerCount);
+            long width = Math.max(1, ((long) maxId - minId + 1 + parts - 1) / parts);
+            long from = (long) minId - 1;
+            while (from < maxId) {
+                long to = Math.min(maxId, from + width);
+                partitions.add(new CatalogJobPartition(saved.getId(), shard, (int) from, (int) to));
+                from = to;
+            }
+        }
+        partitionRepository.saveAll(partitions);
+        launch(saved);
+        return saved;
+    }
+
+    public Optional<CatalogJob> find(Long id) {
+        return jobRepository.findById(id);
+    }
+
+    public List<CatalogJob> recent(int limit) {
+        return jobRepository.findAllByOrderByIdDesc(Limit.of(limit));
+    }
+
+    // False when the job had already finished
+    public boolean cancel(Long id) {
+        boolean cancelled = jobRepository.finish(id, CatalogJob.Status.CANCELLED, Instant.now(), null) > 0;
+        RunningJob run = running.get(id);
+        if (cancelled && run != null) {
+            run.cancelled = true;
+        }
+        return cancelled;
+    }
+
+    // Starts workers on the job's unfinished partitions this instance can claim, returning how many it claimed
+    private int launch(CatalogJob job) {
+        if (job.getStatus() == CatalogJob.Status.PENDING) {
+            Instant startedAt = Instant.now();
+            jobRepository.markStarted(job.getId(), startedAt);
+            job.setStatus(CatalogJob.Status.RUNNING);
+            job.setStartedAt(startedAt);
+        }
+        List<CatalogJobPartition> todo = partitionRepository.findByJobIdOrderById(job.getId()).stream()
+                .filter(partition -> !partition.isDone())
+                .toList();
+        if (todo.isEmpty()) {
+            jobRepository.finish(job.getId(), CatalogJob.Status.COMPLETED, Instant.now(), null);
+            return 0;
+        }
+
+        int claimed = 0;
+        synchronized (running) {
+            RunningJob run = running.computeIfAbsent(job.getId(), id -> new RunningJob(job, patchOf(job)));
+            for (CatalogJobPartition partition : todo) {
+                if (!run.partitions.contains(partition.getId())
+                        && partitionRepository.claim(partition.getId(), instanceId, Instant.now(), leaseEnd()) > 0) {
+                    run.partitions.add(partition.getId());
+                    workers.execute(() -> runPartition(run, partition));
+                    claimed++;
+                }
+            }
+            if (run.partitions.isEmpty()) {
+                running.remove(job.getId());
+            }
+        }
+        return claimed;
+    }
+
+    private void runPartition(RunningJob run, CatalogJobPartition partition) {
+        String sql = "SELECT id, published_date FROM booksdigital WHERE id > ? AND id <= ?" + run.filter.sql()
+                + " ORDER BY id LIMIT ?";
+        try {
+            int lastId = partition.getLastId();
+            while (!run.cancelled && !run.failed() && !stopping) {
+                long started = System.nanoTime();
+                List<Object> args = new ArrayList<>();
+                args.add(lastId);
+                args.add(partition.getToId());
+                args.addAll(run.filter.args());
+                args.add(chunkSize);
+                List<Map<String, Object>> rows = shards.onShard(partition.getShard(),
+                        () -> jdbcTemplate.queryForList(sql, args.toArray()));
+
+                Map<Integer, String> chunk = new LinkedHashMap<>();
+                for (Map<String, Object> row : rows) {
+                    chunk.put(((Number) row.get("id")).intValue(), (String) row.get("published_date"));
+                }
+                if (!chunk.isEmpty()) {
+                    apply(run, partition.getShard(), chunk);
+                    lastId = ((Number) rows.get(rows.size() - 1).get("id")).intValue();
+                }
+                boolean done = rows.size() < chunkSize;
+                if (!checkpoint(run, partition.getId(), lastId, done, chunk.size())) {
+                    log.info("Catalog job {} partition {} was taken over by another instance", run.job.getId(), partition.getId());
+                    break;
+                }
+                if (done) {
+                    break;
+                }
+                throttle(System.nanoTime() - started);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (!stopping) {
+                log.warn("Catalog job {} failed on shard {}: {}", run.job.getId(), partition.getShard(), e.getMessage());
+                run.fail(e);
+            }
+        } finally {
+            boolean last;
+            synchronized (running) {
+                run.partitions.remove(partition.getId());
+                last = run.partitions.isEmpty();
+                if (last) {
+                    running.remove(run.job.getId(), run);
+                }
+            }
+            if (last) {
+                finish(run);
+            }
+        }
+    }
+
+    private void apply(RunningJob run, int shard, Map<Integer, String> chunk) {
+        switch (run.job.getType()) {
+            case PATCH -> bookService.patchBooks(chunk.keySet(), run.patch);
+            case DELETE -> bookService.deleteBooks(chunk.keySet());
+            case RECOMPUTE -> bookService.recomputeDerived(shard, chunk);
+        }
+    }
+
+    // False when the partition's lease was lost; the chunk is then left for the new owner to redo
+    private boolean checkpoint(RunningJob run, Long partitionId, int lastId, boolean done, int processed) {
+        Long jobId = run.job.getId();
+        Boolean kept = transactionTemplate.execute(status -> {
+            if (partitionRepository.checkpoint(partitionId, instanceId, lastId, done, leaseEnd()) == 0) {
+                return false;
+            }
+            if (processed > 0) {
+                jobRepository.addProcessed(jobId, processed);
+            }
+            return true;
+        });
+        // Cancelled, or failed or completed, on another instance
+        if (jobRepository.findStatusById(jobId).orElse(null) != CatalogJob.Status.RUNNING) {
+            run.cancelled = true;
+        }
+        return Boolean.TRUE.equals(kept);
+    }
+
+    private Instant leaseEnd() {
+        return Instant.now().plusMillis(leaseMs);
+    }
+
+    private void throttle(long chunkNanos) throws InterruptedException {
+        long pauseNanos = (long) (chunkNanos * (1 - maxDutyCycle) / maxDutyCycle);
+        long pauseMs = Math.max(minPauseMs, TimeUnit.NANOSECONDS.toMillis(pauseNanos));
+        if (pauseMs > 0) {
+            Thread.sleep(pauseMs);
+        }
+    }
+
+    private void finish(RunningJob run) {
+        if (stopping || run.cancelled) {
+            return;
+        }
+        Long id = run.job.getId();
+        if (run.failed()) {
+            String message = String.valueOf(run.error.getMessage());
+            jobRepository.finish(id, CatalogJob.Status.FAILED, Instant.now(),
+                    message.length() > 1000 ? message.substring(0, 1000) : message);
+        } else if (partitionRepository.countByJobIdAndDoneFalse(id) > 0) {
+            // Other instances still hold partitions; whichever finishes the last one completes the job
+            return;
+        } else if (jobRepository.finish(id, CatalogJob.Status.COMPLETED, Instant.now(), null) > 0) {
+            log.info("Catalog job {} ({}) completed", id, run.job.getType());
+        }
+    }
+
+    private void safeResume() {
+        try {
+            resume();
+        } catch (Exception e) {
+            log.warn("Catalog job lease scan failed: {}", e.getMessage());
+        }
+    }
+
+    private BookPatch patchOf(CatalogJob job) {
+        if (job.getPatch() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(job.getPatch(), BookPatch.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Catalog job " + job.getId() + " has an unreadable patch", e);
+        }
+    }
+
+    // Extra WHERE conditions selecting the books a job applies to
+    private record Filter(String sql, List<Object> args) {
+
+        static Filter of(CatalogJob job) {
+            StringBuilder sql = new StringBuilder();
+            List<Object> args = new ArrayList<>();
+            if (job.getAuthorId() != null) {
+                sql.append(" AND author_id = ?");
+                args.add(job.getAuthorId());
+            }
+            if (job.getCategoryId() != null) {
+                sql.append(" AND category_id = ?");
+                args.add(job.getCategoryId());
+            }
+            if (job.getFeatured() != null) {
+                sql.append(" AND featured = ?");
+                args.add(job.getFeatured());
+            }
+            return new Filter(sql.toString(), args);
+        }
+    }
+
+    private static final class RunningJob {
+        private final CatalogJob job;
+        private final BookPatch patch;
+        private final Filter filter;
+        // Partitions this instance is working on; guarded by the running map
+        private final Set<Long> partitions = new HashSet<>();
+        private volatile boolean cancelled;
+        private volatile Exception error;
+
+        private RunningJob(CatalogJob job, BookPatch patch) {
+            this.job = job;
+            this.patch = patch;
+            this.filter = Filter.of(job);
+        }
+
+        boolean failed() {
+            return error != null;
+        }
+
+        void fail(Exception e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.thedigitalshelf.books.service;
+
+import com.thedigitalshelf.books.entity.PublishedDateCheckpoint;
+import com.thedigitalshelf.books.repository.PublishedDateCheckpointRepository;
+import com.thedigitalshelf.books.sharding.BookShards;
+import com.thedigitalshelf.books.util.PublishedDateParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Fills published_on for rows saved before the column existed, in keyset-ordered batches resumed from a per-shard checkpoint
+@Component
+public class PublishedDateBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(PublishedDateBackfill.class);
+
+    private static final String SELECT_BATCH = "SELECT id, published_date FROM booksdigital " +
+            "WHERE id > ? AND published_on IS NULL AND published_date IS NOT NULL ORDER BY id LIMIT ?";
+
+    @Value("${books.published-date.backfill-batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookShards shards;
+
+    @Autowired
+    private PublishedDateCheckpointRepository checkpointRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        Thread thread = new Thread(this::safeBackfill, "published-date-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Returns how many books were examined; each is examined once, so unparseable dates aren't retried on every start
+    public int backfill() {
+        int[] counts = new int[2];
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            backfillShard(shard, counts);
+        }
+        int parsed = counts[0];
+        int unparseable = counts[1];
+        if (parsed > 0 || unparseable > 0) {
+            log.info("Backfilled published_on for {} books ({} dates could not be parsed)", parsed, unparseable);
+        }
+        return parsed + unparseable;
+    }
+
+    // counts[0] collects parsed dates, counts[1] unparseable ones
+    private void backfillShard(int shard, int[] counts) {
+        // Checkpoints live on the primary with the other non-book tables
+        PublishedDateCheckpoint checkpoint = shards.onShard(0, () -> checkpointRepository.findById(shard))
+                .orElseGet(() -> new PublishedDateCheckpoint(shard, 0));
+        while (true) {
+            int lastId = checkpoint.getLastCheckedId();
+            List<Map<String, Object>> rows = shards.onShard(shard, () -> jdbcTemplate.queryForList(SELECT_BATCH, lastId, batchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                int id = ((Number) row.get("id")).intValue();
+                LocalDate date = PublishedDateParser.parse((String) row.get("published_date"));
+                if (date != null) {
+                    updates.add(new Object[]{Date.valueOf(date), id});
+                } else {
+                    counts[1]++;
+                }
+                checkpoint.setLastCheckedId(id);
+            }
+            if (!updates.isEmpty()) {
+                shards.onShard(shard, () -> jdbcTemplate.batchUpdate("UPDATE booksdigital SET published_on = ? WHERE id = ?", updates));
+                counts[0] += updates.size();
+            }
+            shards.onShard(0, () -> checkpointRepository.save(checkpoint));
+        }
+    }
+
+    private void safeBackfill() {
+        try {
+            backfill();
+        } catch (Exception e) {
+            log.warn("Published date backfill failed: {}", e.getMessage());
+        }
+    }
+}
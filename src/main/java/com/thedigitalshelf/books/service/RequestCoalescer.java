@@ -0,0 +1,127 @@
+package com.thedigitalshelf.books.service;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Single-flight execution of read queries: concurrent callers asking for the same key
+ * share one in-flight call and its result (or its failure) instead of each hitting the database.
+ *
+ * Callers that shared a call each get their own copy of a mutable result. A catalog change
+ * detaches the calls in flight, so a request that starts after a write runs its own query
+ * instead of joining one that may have read the rows before it.
+ */
+@Component
+public class RequestCoalescer {
+
+    @Value("${books.coalescing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // For immutable results
+    public <T> T execute(String key, Supplier<T> call) {
+        return execute(key, call, UnaryOperator.identity());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call, UnaryOperator<T> copy) {
+        Flight mine = new Flight();
+        Flight flight = inFlight.compute(key, (k, current) -> {
+            if (current == null) {
+                return mine;
+            }
+            current.followers++;
+            return current;
+        });
+        if (flight != mine) {
+            deduplicated.incrementAndGet();
+            return copy.apply((T) await(key, flight.result));
+        }
+
+        executions.incrementAndGet();
+        T result;
+        try {
+            result = call.get();
+            mine.result.complete(result);
+        } catch (RuntimeException | Error e) {
+            failures.incrementAndGet();
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+        // Followers copy from the shared result, so once there are any nobody may get it to change
+        return mine.followers > 0 ? copy.apply(result) : result;
+    }
+
+    @EventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        // View counts are allowed to lag; anything else may change what an in-flight query should have read
+        if (event.getType() != CatalogChangeEvent.Type.VIEWED) {
+            inFlight.clear();
+        }
+    }
+
+    @EventListener
+    public void onCatalogRefresh(CatalogRefreshEvent event) {
+        inFlight.clear();
+    }
+
+    private Object await(String key, CompletableFuture<Object> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw new IllegalStateException("Timed out waiting for in-flight query: " + key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for in-flight query: " + key, e);
+        } catch (ExecutionException e) {
+            // Re-throw the leader's failure as-is so callers see the same exception type
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("In-flight query failed: " + key, cause);
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("executions", executions.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("failures", failures.get());
+        stats.put("inFlight", (long) inFlight.size());
+        return stats;
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        // Only changed inside compute() on the map, and read after remove(), both under the key's lock
+        private int followers;
+    }
+}
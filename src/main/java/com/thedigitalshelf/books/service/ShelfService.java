@@ -0,0 +1,285 @@
+package com.thedigitalshelf.books.service;
+
+import com.thedigitalshelf.books.entity.User;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import com.thedigitalshelf.books.event.ShelfChangeEvent;
+import com.thedigitalshelf.books.repository.UserRepository;
+import com.thedigitalshelf.books.repository.UserShelfRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Per-user shelves kept as compressed bitmaps of book ids. A user's bitmap is loaded on a cache
+ * miss and cached; every change is written to user_shelves before it is acknowledged. Each row
+ * carries a version, so a write from a stale copy (another instance got there first) reloads the
+ * row and reapplies the change instead of overwriting it. Writes are announced as
+ * {@link ShelfChangeEvent}s, which the invalidation bus carries to the other instances so they
+ * drop their copy; a {@link CatalogRefreshEvent} drops every cached shelf. Least recently used
+ * bitmaps are evicted once the cache is over its limit.
+ */
+@Service
+public class ShelfService {
+
+    private static final String UPDATE_SHELF =
+            "UPDATE user_shelves SET book_ids = ?, book_count = ?, updated_at = ?, version = ? "
+                    + "WHERE user_id = ? AND COALESCE(version, 0) = ?";
+    private static final String INSERT_SHELF =
+            "INSERT INTO user_shelves (user_id, book_ids, book_count, updated_at, version) VALUES (?, ?, ?, ?, ?)";
+
+    @Value("${books.shelf.max-books:5000}")
+    private int maxBooks;
+
+    @Value("${books.shelf.max-cached-users:10000}")
+    private int maxCachedUsers;
+
+    @Autowired
+    private UserShelfRepository shelfRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<String, Long> userIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Shelf> shelves = new ConcurrentHashMap<>();
+    // Bumped by every invalidation, so a load that raced with one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Usernames never change, so the id lookup only hits the database once per user; unknown names aren't cached
+    public Long resolveUserId(String username) {
+        Long id = userIds.get(username);
+        if (id != null) {
+            return id;
+        }
+        id = userRepository.findByUsername(username).map(User::getId).orElse(null);
+        if (id != null) {
+            if (userIds.size() >= maxCachedUsers) {
+                userIds.clear();
+            }
+            userIds.put(username, id);
+        }
+        return id;
+    }
+
+    @EventListener
+    public void onShelfChange(ShelfChangeEvent event) {
+        if (event.isRemote()) {
+            invalidations.incrementAndGet();
+            drop(event.getUserId());
+        }
+    }
+
+    @EventListener
+    public void onCatalogRefresh(CatalogRefreshEvent event) {
+        invalidations.incrementAndGet();
+        shelves.keySet().forEach(this::drop);
+    }
+
+    // Returns false when the book was already on the shelf
+    public boolean add(long userId, int bookId) {
+        return update(userId, books -> {
+            if (books.contains(bookId)) {
+                return false;
+            }
+            if (books.getCardinality() >= maxBooks) {
+                throw new IllegalStateException("A shelf can hold at most " + maxBooks + " books");
+            }
+            books.add(bookId);
+            return true;
+        });
+    }
+
+    public boolean remove(long userId, int bookId) {
+        return update(userId, books -> books.checkedRemove(bookId));
+    }
+
+    public void removeAll(long userId, Collection<Integer> bookIds) {
+        update(userId, books -> {
+            int before = books.getCardinality();
+            bookIds.forEach(books::remove);
+            return books.getCardinality() != before;
+        });
+    }
+
+    public int[] getBookIds(long userId) {
+        return withShelf(userId, shelf -> shelf.books.toArray());
+    }
+
+    // Membership for a whole page of ids with a single bitmap intersection
+    public Map<Integer, Boolean> contains(long userId, List<Integer> bookIds) {
+        RoaringBitmap probe = new RoaringBitmap();
+        bookIds.forEach(probe::add);
+        RoaringBitmap hits = withShelf(userId, shelf -> RoaringBitmap.and(shelf.books, probe));
+
+        Map<Integer, Boolean> result = new LinkedHashMap<>();
+        for (Integer bookId : bookIds) {
+            result.put(bookId, hits.contains(bookId));
+        }
+        return result;
+    }
+
+    // Applies the change to a copy, persists it and only then swaps it in; false when nothing changed
+    private boolean update(long userId, Predicate<RoaringBitmap> change) {
+        boolean changed = write(userId, change);
+        if (changed) {
+            eventPublisher.publishEvent(new ShelfChangeEvent(userId));
+        }
+        return changed;
+    }
+
+    private boolean write(long userId, Predicate<RoaringBitmap> change) {
+        while (true) {
+            Boolean changed = withShelf(userId, shelf -> {
+                RoaringBitmap next = shelf.books.clone();
+                if (!change.test(next)) {
+                    return false;
+                }
+                if (!persist(userId, shelf.version, next)) {
+                    // Another instance wrote first; drop this copy and retry against the stored shelf
+                    drop(userId);
+                    return null;
+                }
+                shelf.books = next;
+                shelf.version++;
+                return true;
+            });
+            if (changed != null) {
+                return changed;
+            }
+        }
+    }
+
+    private boolean persist(long userId, long version, RoaringBitmap books) {
+        byte[] bytes = serialize(books);
+        Object now = Instant.now().atOffset(ZoneOffset.UTC);
+        if (jdbcTemplate.update(UPDATE_SHELF, bytes, books.getCardinality(), now, version + 1, userId, version) == 1) {
+            return true;
+        }
+        if (version != 0) {
+            return false;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SHELF, userId, bytes, books.getCardinality(), now, 1L);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private void evictIdle() {
+        // Trim to 90% of the limit so the sort is not repeated on every miss
+        int excess = shelves.size() - (maxCachedUsers - maxCachedUsers / 10);
+        List<Map.Entry<Long, Shelf>> candidates = new ArrayList<>(shelves.entrySet());
+        candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (Map.Entry<Long, Shelf> entry : candidates) {
+            if (excess <= 0) {
+                break;
+            }
+            Shelf shelf = entry.getValue();
+            synchronized (shelf) {
+                if (shelves.remove(entry.getKey(), shelf)) {
+                    shelf.evicted = true;
+                    excess--;
+                }
+            }
+        }
+    }
+
+    private void drop(long userId) {
+        Shelf shelf = shelves.remove(userId);
+        if (shelf != null) {
+            synchronized (shelf) {
+                shelf.evicted = true;
+            }
+        }
+    }
+
+    private <T> T withShelf(long userId, Function<Shelf, T> action) {
+        while (true) {
+            Shelf shelf = shelves.get(userId);
+            if (shelf == null) {
+                // Loaded outside the map so a slow query doesn't block other users' entries
+                long seen = invalidations.get();
+                Shelf loaded = load(userId);
+                shelf = shelves.putIfAbsent(userId, loaded);
+                if (shelf == null) {
+                    shelf = loaded;
+                    if (invalidations.get() != seen) {
+                        // The copy may predate a write announced while it was loading
+                        shelves.remove(userId, loaded);
+                        continue;
+                    }
+                    if (shelves.size() > maxCachedUsers) {
+                        evictIdle();
+                    }
+                }
+            }
+            synchronized (shelf) {
+                // Lost a race with eviction or a stale write; load a fresh copy
+                if (!shelf.evicted) {
+                    shelf.lastAccess = System.nanoTime();
+                    return action.apply(shelf);
+                }
+            }
+        }
+    }
+
+    private Shelf load(long userId) {
+        RoaringBitmap books = new RoaringBitmap();
+        long version = shelfRepository.findById(userId).map(row -> {
+            try {
+                books.deserialize(ByteBuffer.wrap(row.getBookIds()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt shelf for user " + userId, e);
+            }
+            return row.getVersion() == null ? 0L : row.getVersion();
+        }).orElse(0L);
+        return new Shelf(books, version);
+    }
+
+    private static byte[] serialize(RoaringBitmap books) {
+        books.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(books.serializedSizeInBytes());
+        books.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static final class Shelf {
+        private RoaringBitmap books;
+        private long version;
+        private boolean evicted;
+        private long lastAccess;
+
+        private Shelf(RoaringBitmap books, long version) {
+            this.books = books;
+            this.version = version;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+}
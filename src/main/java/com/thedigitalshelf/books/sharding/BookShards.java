@@ -0,0 +1,228 @@
+package com.thedigitalshelf.books.sharding;
+
+import com.thedigitalshelf.books.diagnostics.QueryStats;
+import com.thedigitalshelf.books.entity.Books;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Placement and routing for the books table. With sharding enabled, shard i's identity column
+ * hands out ids congruent to i modulo the shard count, so a book id alone names its shard.
+ * New books are placed round-robin.
+ *
+ * Work for a shard runs with that shard selected for the current thread; the routing
+ * DataSource picks it up when the next connection is acquired. Because a transaction keeps its
+ * connection, switching shards inside one is refused. With sharding disabled there is a single
+ * shard and everything runs inline.
+ *
+ * Cross-shard queries share a pool sized to the other shards' connection pools with a bounded
+ * queue; when both are full the query fails with {@link ShardsBusyException} instead of waiting.
+ */
+@Component
+public class BookShards {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    @Value("${books.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${books.sharding.additional-urls:}")
+    private List<String> additionalUrls;
+
+    @Value("${books.sharding.scatter-timeout-ms:10000}")
+    private long scatterTimeoutMs;
+
+    // 0 = one thread per connection the other shards' pools can hand out; more would only wait for connections
+    @Value("${books.sharding.scatter-threads:0}")
+    private int scatterThreads;
+
+    @Value("${books.sharding.scatter-queue-capacity:64}")
+    private int scatterQueueCapacity;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionsPerShard;
+
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private int shardCount = 1;
+    private ExecutorService pool;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        shardCount = 1 + (int) additionalUrls.stream().filter(url -> !url.isBlank()).count();
+        if (shardCount > 1) {
+            // The caller queries the first shard itself, so the pool only ever works on the others
+            int size = scatterThreads > 0 ? scatterThreads : (shardCount - 1) * connectionsPerShard;
+            AtomicInteger threads = new AtomicInteger();
+            pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(scatterQueueCapacity), r -> {
+                Thread thread = new Thread(r, "book-shard-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    // Read by the routing DataSource; null means the primary shard
+    static Integer currentShard() {
+        return CURRENT.get();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardOf(int bookId) {
+        return Math.floorMod(bookId, shardCount);
+    }
+
+    // Where a new book goes; its id will then point back to the same shard
+    public int placementFor(Books book) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        return Math.floorMod(nextShard.getAndIncrement(), shardCount);
+    }
+
+    public Map<Integer, List<Integer>> groupByShard(Collection<Integer> bookIds) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (Integer id : bookIds) {
+            groups.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        return groups;
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        int current = previous == null ? 0 : previous;
+        if (shard == current) {
+            return action.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch from shard " + current + " to shard " + shard + " inside a transaction");
+        }
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    // Runs the same query on every shard in parallel; results come back in shard order
+    public <T> List<T> scatter(Supplier<T> query) {
+        List<Integer> all = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            all.add(shard);
+        }
+        return scatter(all, shard -> query.get());
+    }
+
+    public <T> List<T> scatter(Collection<Integer> shards, IntFunction<T> query) {
+        List<Integer> targets = new ArrayList<>(new TreeSet<>(shards));
+        if (targets.size() == 1) {
+            int shard = targets.get(0);
+            return Collections.singletonList(onShard(shard, () -> query.apply(shard)));
+        }
+
+        // Statements run on pool threads still count towards the caller's query budget
+        QueryStats callerStats = QueryStats.current();
+        List<CompletableFuture<ShardResult<T>>> remote = new ArrayList<>();
+        List<T> results = new ArrayList<>(targets.size());
+        try {
+            for (int shard : targets.subList(1, targets.size())) {
+                remote.add(submit(shard, query, callerStats));
+            }
+            int first = targets.get(0);
+            results.add(onShard(first, () -> query.apply(first)));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scatterTimeoutMs);
+            for (int i = 0; i < remote.size(); i++) {
+                ShardResult<T> result = await(remote.get(i), targets.get(i + 1), deadline);
+                if (callerStats != null && result.stats() != null) {
+                    callerStats.include(result.stats());
+                }
+                results.add(result.value());
+            }
+        } finally {
+            remote.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    private <T> CompletableFuture<ShardResult<T>> submit(int shard, IntFunction<T> query, QueryStats callerStats) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                QueryStats stats = callerStats != null ? QueryStats.start() : null;
+                try {
+                    return new ShardResult<>(onShard(shard, () -> query.apply(shard)), stats);
+                } finally {
+                    if (stats != null) {
+                        stats.stop();
+                    }
+                }
+            }, pool);
+        } catch (RejectedExecutionException e) {
+            throw new ShardsBusyException("Too many concurrent cross-shard queries; try again shortly");
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, int shard, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Shard " + shard + " did not answer within " + scatterTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard " + shard, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Shard " + shard + " failed", e.getCause());
+        }
+    }
+
+    private record ShardResult<T>(T value, QueryStats stats) {
+    }
+}
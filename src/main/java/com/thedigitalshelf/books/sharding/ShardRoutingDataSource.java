@@ -0,0 +1,38 @@
+package com.thedigitalshelf.books.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+// Hands out connections to the shard selected by BookShards for the current thread, and owns the shards' pools
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = BookShards.currentShard();
+        return shard == null ? 0 : shard;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (DataSource shard : getResolvedDataSources().values()) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = new IOException("Failed to close a shard pool", e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
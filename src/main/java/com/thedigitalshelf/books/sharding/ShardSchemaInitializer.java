@@ -0,0 +1,97 @@
+package com.thedigitalshelf.books.sharding;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepares every shard at startup: creates the mapped tables on shards that don't have them
+ * yet, and points each shard's identity column at the next id that belongs to it
+ * (id % shardCount == shard), stepping by the shard count.
+ *
+ * Routing trusts that rule, so startup fails if any shard holds a book whose id names another
+ * shard. That happens when sharding is enabled over an existing database or the shard count is
+ * changed later; books are never moved between shards automatically.
+ */
+@Component
+@ConditionalOnProperty(name = "books.sharding.enabled", havingValue = "true")
+public class ShardSchemaInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+    @Value("${books.sharding.initialize-schema:true}")
+    private boolean initializeSchema;
+
+    @Autowired
+    private BookShards shards;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void initialize() {
+        int count = shards.getShardCount();
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            shards.onShard(shard, () -> {
+                // Shard 0 is handled by spring.jpa.hibernate.ddl-auto like an unsharded database
+                if (current > 0 && initializeSchema && !hasBooksTable()) {
+                    log.info("Creating schema on book shard {}", current);
+                    entityManagerFactory.unwrap(SessionFactoryImplementor.class).getSchemaManager().exportMappedObjects(true);
+                }
+                return null;
+            });
+        }
+        verifyPlacement();
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            shards.onShard(shard, () -> {
+                alignIdentity(current, count);
+                return null;
+            });
+        }
+        log.info("Book sharding enabled across {} shard(s)", count);
+    }
+
+    public void verifyPlacement() {
+        int count = shards.getShardCount();
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            Long misplaced = shards.onShard(shard, () -> jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM booksdigital WHERE MOD(id, ?) <> ?", Long.class, count, current));
+            if (misplaced != null && misplaced > 0) {
+                throw new IllegalStateException("Book shard " + current + " holds " + misplaced + " book(s) whose id belongs to another shard " +
+                        "(id % " + count + " != " + current + "). The shard count can't change once books are stored, and sharding " +
+                        "can't be enabled over an existing catalog without moving its books to the shards their ids name.");
+            }
+        }
+    }
+
+    private boolean hasBooksTable() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booksdigital WHERE 1 = 0", Long.class);
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    private void alignIdentity(int shard, int count) {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM booksdigital", Long.class);
+        long floor = (max == null ? 0 : max) + 1;
+        long next = floor + Math.floorMod(shard - floor, (long) count);
+        jdbcTemplate.execute("ALTER TABLE booksdigital ALTER COLUMN id RESTART WITH " + next);
+        jdbcTemplate.execute("ALTER TABLE booksdigital ALTER COLUMN id SET INCREMENT BY " + count);
+    }
+}
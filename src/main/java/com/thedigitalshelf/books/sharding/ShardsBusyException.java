@@ -0,0 +1,13 @@
+package com.thedigitalshelf.books.sharding;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Thrown instead of queueing when the scatter pool is full, so overload turns into fast 503s rather than piled-up requests
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ShardsBusyException extends RuntimeException {
+
+    public ShardsBusyException(String message) {
+        super(message);
+    }
+}
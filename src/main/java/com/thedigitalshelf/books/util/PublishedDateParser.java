@@ -0,0 +1,71 @@
+package com.thedigitalshelf.books.util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Tolerant parser for the free-form Books.publishedDate strings; partial dates resolve to their first day
+public final class PublishedDateParser {
+
+    private static final List<DateTimeFormatter> DATES = formatters(
+            "uuuu-MM-dd", "uuuu/MM/dd", "uuuu-M-d", "uuuu.MM.dd",
+            "d MMMM uuuu", "d MMM uuuu", "MMMM d, uuuu", "MMM d, uuuu", "MMMM d uuuu", "MMM d uuuu",
+            "M/d/uuuu", "d.M.uuuu");
+
+    private static final List<DateTimeFormatter> MONTHS = formatters(
+            "uuuu-MM", "uuuu/MM", "MMMM uuuu", "MMM uuuu", "MMMM, uuuu", "M/uuuu");
+
+    private static final Pattern ISO_PREFIX = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})[T ].*");
+    private static final Pattern YEAR = Pattern.compile("(?<!\\d)(1[0-9]{3}|20[0-9]{2})(?!\\d)");
+
+    private PublishedDateParser() {
+    }
+
+    public static LocalDate parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String text = value.trim().replaceAll("\\s+", " ");
+        Matcher iso = ISO_PREFIX.matcher(text);
+        if (iso.matches()) {
+            text = iso.group(1);
+        }
+
+        for (DateTimeFormatter formatter : DATES) {
+            try {
+                return LocalDate.parse(text, formatter);
+            } catch (DateTimeParseException ignored) {
+                // try the next layout
+            }
+        }
+        for (DateTimeFormatter formatter : MONTHS) {
+            try {
+                return YearMonth.parse(text, formatter).atDay(1);
+            } catch (DateTimeParseException ignored) {
+                // try the next layout
+            }
+        }
+
+        Matcher year = YEAR.matcher(text);
+        if (year.find()) {
+            return LocalDate.of(Integer.parseInt(year.group(1)), 1, 1);
+        }
+        return null;
+    }
+
+    private static List<DateTimeFormatter> formatters(String... patterns) {
+        return Arrays.stream(patterns)
+                .map(pattern -> new DateTimeFormatterBuilder()
+                        .parseCaseInsensitive()
+                        .appendPattern(pattern)
+                        .toFormatter(Locale.ENGLISH))
+                .toList();
+    }
+}
@@ -0,0 +1,84 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.diagnostics.AccessLogEvent;
+import com.thedigitalshelf.books.diagnostics.AccessLogRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessLogRingTests {
+
+    @Test
+    void fullRingDropsInsteadOfBlocking() {
+        AccessLogRing ring = new AccessLogRing(3);
+        assertEquals(4, ring.getCapacity());
+
+        for (int i = 0; i < 4; i++) {
+            AccessLogEvent event = ring.claim();
+            event.setStatus(200 + i);
+            ring.publish(event);
+        }
+        assertNull(ring.claim());
+        assertEquals(1, ring.getDropped());
+
+        List<Integer> statuses = new ArrayList<>();
+        assertEquals(4, ring.drain(event -> statuses.add(event.getStatus()), 100));
+        assertEquals(List.of(200, 201, 202, 203), statuses);
+        assertTrue(ring.isDrained());
+
+        // Drained slots are reusable and come back cleared
+        AccessLogEvent reused = ring.claim();
+        assertNull(reused.getRoute());
+        ring.publish(reused);
+    }
+
+    @Test
+    void concurrentProducersLoseNothingButCountedDrops() throws Exception {
+        AccessLogRing ring = new AccessLogRing(256);
+        int producers = 4;
+        int perProducer = 50_000;
+        CountDownLatch done = new CountDownLatch(producers);
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        AtomicLong[] lastSeen = new AtomicLong[producers];
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            lastSeen[p] = new AtomicLong(-1);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    AccessLogEvent event = ring.claim();
+                    if (event != null) {
+                        event.setStatus(producer);
+                        event.setLatencyNanos(i);
+                        ring.publish(event);
+                    }
+                }
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long consumed = 0;
+        while (done.getCount() > 0 || !ring.isDrained()) {
+            consumed += ring.drain(event -> {
+                // Each producer's events must come out in the order it published them
+                long previous = lastSeen[event.getStatus()].getAndSet(event.getLatencyNanos());
+                if (previous >= event.getLatencyNanos()) {
+                    outOfOrder.set(true);
+                }
+            }, 64);
+        }
+
+        assertEquals((long) producers * perProducer, consumed + ring.getDropped());
+        assertTrue(!outOfOrder.get(), "events from one producer were reordered");
+    }
+}
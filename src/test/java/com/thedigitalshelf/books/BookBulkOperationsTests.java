@@ -0,0 +1,69 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.dto.BookPatch;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1")
+@RecordApplicationEvents
+class BookBulkOperationsTests {
+
+    private static final int MISSING_ID = 999_999;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @Test
+    void bulkPatchOnlyReportsBooksThatExist() {
+        Books first = save("Kindred");
+        Books second = save("Dawn");
+        events.clear();
+
+        BookPatch patch = new BookPatch();
+        patch.setFeatured(true);
+        assertEquals(2, bookService.patchBooks(List.of(first.getId(), MISSING_ID, second.getId()), patch));
+        assertEquals(List.of(first.getId(), second.getId()), changedIds(CatalogChangeEvent.Type.UPDATED));
+        assertTrue(bookService.getBookById(first.getId()).orElseThrow().isFeatured());
+    }
+
+    @Test
+    void bulkDeleteOnlyReportsBooksThatExisted() {
+        Books doomed = save("Wild Seed");
+        Books alreadyGone = save("Mind of My Mind");
+        bookService.deleteBook(alreadyGone.getId());
+        events.clear();
+
+        assertEquals(1, bookService.deleteBooks(List.of(doomed.getId(), alreadyGone.getId(), MISSING_ID)));
+        assertEquals(List.of(doomed.getId()), changedIds(CatalogChangeEvent.Type.DELETED));
+        assertTrue(bookService.getBookById(doomed.getId()).isEmpty());
+    }
+
+    private List<Integer> changedIds(CatalogChangeEvent.Type type) {
+        return events.stream(CatalogChangeEvent.class)
+                .filter(event -> event.getType() == type)
+                .map(CatalogChangeEvent::getBookId)
+                .sorted()
+                .toList();
+    }
+
+    private Books save(String title) {
+        Books book = new Books();
+        book.setTitle(title);
+        book.setAuthor("Octavia E. Butler");
+        return bookService.saveBook(book);
+    }
+}
@@ -0,0 +1,74 @@
+package com.thedigitalshelf.books;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:negotiation;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class BookContentNegotiationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM booksdigital");
+        Books book = new Books();
+        book.setTitle("Middlemarch");
+        book.setAuthor("George Eliot");
+        bookService.saveBook(book);
+    }
+
+    @Test
+    void jsonIsTheDefault() throws Exception {
+        mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void smileIsServedWhenAccepted() throws Exception {
+        assertDecodes("application/x-jackson-smile", new SmileMapper());
+    }
+
+    @Test
+    void cborIsServedWhenAccepted() throws Exception {
+        assertDecodes("application/cbor", new CBORMapper());
+    }
+
+    private void assertDecodes(String mediaType, ObjectMapper mapper) throws Exception {
+        byte[] body = mockMvc.perform(get("/api/books").accept(mediaType))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Map<String, Object>> books = mapper.readValue(body, new TypeReference<>() {});
+        assertEquals(1, books.size());
+        assertEquals("Middlemarch", books.get(0).get("title"));
+    }
+}
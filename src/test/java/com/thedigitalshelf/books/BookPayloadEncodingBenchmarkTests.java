@@ -0,0 +1,84 @@
+package com.thedigitalshelf.books;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.thedigitalshelf.books.entity.Books;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Compares payload size and encode/decode time of a catalog list for the negotiated formats. Opt-in:
+//   mvn test -Dtest=BookPayloadEncodingBenchmarkTests -Dbenchmark=true
+// Negotiation itself is covered by BookContentNegotiationTests.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BookPayloadEncodingBenchmarkTests {
+
+    private static final int BOOKS = 2_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    @Test
+    void binaryFormatsAreSmallerThanJson() throws Exception {
+        List<Books> books = sampleCatalog();
+
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", new ObjectMapper());
+        mappers.put("smile", new SmileMapper());
+        mappers.put("cbor", new CBORMapper());
+
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        System.out.printf("%-6s %10s %12s %12s%n", "format", "bytes", "encode(us)", "decode(us)");
+        for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+            ObjectMapper mapper = entry.getValue();
+            byte[] payload = mapper.writeValueAsBytes(books);
+            List<Books> decoded = mapper.readValue(payload, new TypeReference<List<Books>>() {});
+            assertEquals(books.size(), decoded.size());
+            assertEquals(books.get(7).getTitle(), decoded.get(7).getTitle());
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                mapper.readValue(mapper.writeValueAsBytes(books), new TypeReference<List<Books>>() {});
+            }
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                byte[] bytes = mapper.writeValueAsBytes(books);
+                long encoded = System.nanoTime();
+                mapper.readValue(bytes, new TypeReference<List<Books>>() {});
+                encodeNanos += encoded - start;
+                decodeNanos += System.nanoTime() - encoded;
+            }
+
+            sizes.put(entry.getKey(), payload.length);
+            System.out.printf("%-6s %10d %12d %12d%n", entry.getKey(), payload.length,
+                    encodeNanos / MEASURED_ROUNDS / 1_000, decodeNanos / MEASURED_ROUNDS / 1_000);
+        }
+
+        assertTrue(sizes.get("smile") < sizes.get("json"));
+        assertTrue(sizes.get("cbor") < sizes.get("json"));
+    }
+
+    private List<Books> sampleCatalog() {
+        List<Books> books = new ArrayList<>(BOOKS);
+        for (int i = 1; i <= BOOKS; i++) {
+            Books book = new Books("Title " + i, "Author " + (i % 150), "Publisher " + (i % 20), "2001-01-" + (10 + i % 18),
+                    "A fairly ordinary description of book number " + i + " for benchmarking purposes.",
+                    "Category " + (i % 12), "https://covers.example.com/" + i + ".jpg", "https://example.com/books/" + i,
+                    i % 5 + 1, 9.99f + i % 30, i % 17 == 0);
+            book.setId(i);
+            book.setViews(i * 13);
+            book.setVersion(0);
+            books.add(book);
+        }
+        return books;
+    }
+}
@@ -0,0 +1,144 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.diagnostics.QueryCountingDataSource;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.repository.BookRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.thedigitalshelf.books.QueryAssertions.assertQueries;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class BookQueryBudgetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private int bookId;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.deleteAll();
+        for (int i = 0; i < 5; i++) {
+            Books book = new Books();
+            book.setTitle("Book " + i);
+            book.setAuthor("Author " + i);
+            book.setPublishedDate("200" + i);
+            bookId = bookRepository.save(book).getId();
+        }
+    }
+
+    @Test
+    void listingBooksIsOneSelect() throws Exception {
+        assertQueries(mockMvc, get("/api/books")).hasStatus(200).exactly(1).rowsAtMost(5);
+        assertQueries(mockMvc, get("/api/books").param("sort", "publishedDate").param("limit", "2")).hasStatus(200).exactly(1).rowsAtMost(2);
+    }
+
+    @Test
+    void bookDetailIsOneSelect() throws Exception {
+        assertQueries(mockMvc, get("/api/books/{id}", bookId)).hasStatus(200).exactly(1);
+    }
+
+    @Test
+    void batchLookupIsOneSelect() throws Exception {
+        assertQueries(mockMvc, get("/api/books/batch").param("ids", bookId + "," + (bookId - 1) + ",999999"))
+                .hasStatus(200).exactly(1);
+    }
+
+    @Test
+    void incrementingViewsDoesNotLoadTheBook() throws Exception {
+        assertQueries(mockMvc, post("/api/books/{id}/views", bookId)).hasStatus(200).exactly(1);
+        assertQueries(mockMvc, post("/api/books/{id}/views", 999999)).hasStatus(404).exactly(1);
+        assertEquals(1, bookRepository.findById(bookId).orElseThrow().getViews());
+    }
+
+    @Test
+    void patchIsOneUpdate() throws Exception {
+        assertQueries(mockMvc, patch("/api/books/{id}", bookId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 4}")).hasStatus(204).exactly(1);
+    }
+
+    @Test
+    void successfulPatchBumpsTheVersion() throws Exception {
+        int version = bookRepository.findById(bookId).orElseThrow().getVersion();
+        mockMvc.perform(patch("/api/books/{id}", bookId)
+                        .header("If-Match", "\"" + version + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"rating\": 4}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"" + (version + 1) + "\""));
+
+        Books book = bookRepository.findById(bookId).orElseThrow();
+        assertEquals(version + 1, book.getVersion());
+        assertEquals(4, book.getRating());
+    }
+
+    @Test
+    void patchWithAStaleVersionIsAConflict() throws Exception {
+        int stale = bookRepository.findById(bookId).orElseThrow().getVersion();
+        assertQueries(mockMvc, patch("/api/books/{id}", bookId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 2}")).hasStatus(204);
+
+        assertQueries(mockMvc, patch("/api/books/{id}", bookId)
+                .header("If-Match", "\"" + stale + "\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 5}")).hasStatus(409).exactly(2);
+        assertQueries(mockMvc, patch("/api/books/{id}", bookId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 5, \"version\": " + stale + "}")).hasStatus(409).exactly(2);
+
+        Books book = bookRepository.findById(bookId).orElseThrow();
+        assertEquals(stale + 1, book.getVersion());
+        assertEquals(2, book.getRating());
+    }
+
+    @Test
+    void patchOfAMissingBookIsNotFound() throws Exception {
+        assertQueries(mockMvc, patch("/api/books/{id}", 999999)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 4}")).hasStatus(404).exactly(2);
+        assertQueries(mockMvc, patch("/api/books/{id}", 999999)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"rating\": 4}")).hasStatus(404).exactly(2);
+    }
+
+    @Test
+    void deletingDoesNotLoadTheBook() throws Exception {
+        assertQueries(mockMvc, delete("/api/books/{id}", bookId)).hasStatus(200).exactly(1);
+        assertQueries(mockMvc, delete("/api/books/{id}", bookId)).hasStatus(404).exactly(1);
+    }
+
+    @Test
+    void closingTheCountingDataSourceClosesThePool() throws Exception {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:closing");
+        QueryCountingDataSource counting = new QueryCountingDataSource(pool);
+        counting.getConnection().close();
+
+        counting.close();
+        assertTrue(pool.isClosed());
+    }
+}
@@ -0,0 +1,84 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:changefeed;DB_CLOSE_DELAY=-1")
+// Streams stay open and are written from other threads, so the result must not be printed
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+class CatalogChangeFeedTests {
+
+    private static final Pattern CREATED_ID = Pattern.compile("id:(\\S+)\\nevent:created");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void resumesFromItsOwnIdsAndResetsOnOthers() throws Exception {
+        MockHttpServletResponse live = subscribe(null);
+        save("Persuasion");
+        String firstId = awaitMatch(live, CREATED_ID).group(1);
+        save("Emma");
+
+        // Resuming from the first event replays the second without a reset
+        MockHttpServletResponse resumed = subscribe(firstId);
+        awaitContent(resumed, "event:created");
+        assertFalse(resumed.getContentAsString().contains("event:reset"));
+
+        // An id from before a restart or from another instance, or one beyond the latest, can't be trusted
+        String epoch = firstId.substring(0, firstId.indexOf('-'));
+        for (String foreign : new String[]{"42", "deadbeef-1", epoch + "-1000000"}) {
+            awaitContent(subscribe(foreign), "event:reset");
+        }
+    }
+
+    private MockHttpServletResponse subscribe(String lastEventId) throws Exception {
+        var request = get("/api/books/changes");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private void save(String title) {
+        Books book = new Books();
+        book.setTitle(title);
+        book.setAuthor("Jane Austen");
+        bookService.saveBook(book);
+    }
+
+    private static void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        for (int i = 0; i < 100 && !response.getContentAsString().contains(expected); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(response.getContentAsString().contains(expected), response.getContentAsString());
+    }
+
+    private static Matcher awaitMatch(MockHttpServletResponse response, Pattern pattern) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            Matcher matcher = pattern.matcher(response.getContentAsString());
+            if (matcher.find()) {
+                return matcher;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("no match in " + response.getContentAsString());
+    }
+}
@@ -0,0 +1,202 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.dto.BookPatch;
+import com.thedigitalshelf.books.dto.DirectoryPage;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.entity.DirectoryEntry;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.CatalogDirectory;
+import com.thedigitalshelf.books.service.CatalogDirectory.Dimension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.thedigitalshelf.books.QueryAssertions.assertQueries;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:directory;DB_CLOSE_DELAY=-1",
+        // Recounts only where a test asks for one
+        "books.directory.recount-delay-ms=600000"
+})
+@AutoConfigureMockMvc
+class CatalogDirectoryTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CatalogDirectory directory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        for (int i = 0; i < 100 && !directory.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(directory.isReady(), "startup backfill did not finish");
+        jdbcTemplate.update("DELETE FROM booksdigital");
+        directory.recount();
+    }
+
+    @Test
+    void countsFollowSavesPatchesAndDeletes() {
+        Books first = save("The Dispossessed", "Ursula K. Le Guin", "Science Fiction");
+        Books second = save("A Wizard of Earthsea", "  ursula k.   le guin ", "Fantasy");
+        Books third = save("Mort", "Terry Pratchett", "fantasy");
+
+        assertEquals(Map.of("terry pratchett", 1, "ursula k. le guin", 2), counts(Dimension.AUTHOR, null));
+        assertEquals(Map.of("fantasy", 2, "science fiction", 1), counts(Dimension.CATEGORY, null));
+        assertEquals(first.getAuthorId(), second.getAuthorId());
+        assertEquals("Ursula K. Le Guin", directory.find(Dimension.AUTHOR, first.getAuthorId()).orElseThrow().getName());
+
+        BookPatch patch = new BookPatch();
+        patch.setAuthor("Ursula K. Le Guin");
+        patch.setCategory("Science Fiction");
+        bookService.patchBook(third.getId(), patch);
+        assertEquals(Map.of("ursula k. le guin", 3), counts(Dimension.AUTHOR, null));
+        assertEquals(Map.of("fantasy", 1, "science fiction", 2), counts(Dimension.CATEGORY, null));
+
+        // A full update through saveBook moves the book back
+        Books reloaded = bookService.getBookById(third.getId()).orElseThrow();
+        reloaded.setAuthor("Terry Pratchett");
+        Books updated = bookService.saveBook(reloaded);
+        assertNotNull(updated.getAuthorId());
+        assertEquals(Map.of("terry pratchett", 1, "ursula k. le guin", 2), counts(Dimension.AUTHOR, null));
+
+        bookService.deleteBook(first.getId());
+        directory.recount();
+        assertEquals(Map.of("terry pratchett", 1, "ursula k. le guin", 1), counts(Dimension.AUTHOR, null));
+        assertEquals(Map.of("fantasy", 1, "science fiction", 1), counts(Dimension.CATEGORY, null));
+    }
+
+    @Test
+    void concurrentUpdatesToOneBookKeepCountsExact() throws InterruptedException {
+        Books book = save("Equal Rites", "Author 0", "Fantasy");
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            int writer = t;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20; i++) {
+                    BookPatch patch = new BookPatch();
+                    patch.setAuthor("Author " + ((writer + i) % 3));
+                    bookService.patchBook(book.getId(), patch);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // No recount has run, so the counts are exactly what the updates left behind
+        String author = jdbcTemplate.queryForObject("SELECT author FROM booksdigital WHERE id = ?", String.class, book.getId());
+        Map<String, Integer> nonZero = new TreeMap<>(counts(Dimension.AUTHOR, "author"));
+        nonZero.values().removeIf(count -> count == 0);
+        assertEquals(Map.of(CatalogDirectory.key(author), 1), nonZero);
+    }
+
+    @Test
+    void pagesAreAlphabeticalWithACursor() {
+        for (String author : List.of("Echo", "alpha", "Delta", "Bravo", "charlie", "Delta Force")) {
+            save("Book by " + author, author, "General");
+        }
+
+        DirectoryPage first = directory.page(Dimension.AUTHOR, null, null, 2);
+        assertEquals(List.of("alpha", "Bravo"), names(first));
+        assertEquals("bravo", first.getNext());
+
+        DirectoryPage second = directory.page(Dimension.AUTHOR, null, first.getNext(), 3);
+        assertEquals(List.of("charlie", "Delta", "Delta Force"), names(second));
+
+        DirectoryPage last = directory.page(Dimension.AUTHOR, null, second.getNext(), 3);
+        assertEquals(List.of("Echo"), names(last));
+        assertNull(last.getNext());
+
+        assertEquals(List.of("Delta", "Delta Force"), names(directory.page(Dimension.AUTHOR, "DELTA", null, 10)));
+        assertEquals(List.of(), names(directory.page(Dimension.AUTHOR, "%", null, 10)));
+        assertEquals(List.of("alpha", "Bravo", "charlie", "Delta", "Delta Force", "Echo"), bookService.getAllAuthors());
+    }
+
+    @Test
+    void booksByAuthorAreOneIndexedLookup() throws Exception {
+        Books book = save("Small Gods", "Terry Pratchett", "Fantasy");
+        save("Guards! Guards!", "Terry Pratchett", "Fantasy");
+        save("Dune", "Frank Herbert", "Science Fiction");
+
+        assertQueries(mockMvc, get("/api/authors").param("limit", "10"))
+                .hasStatus(200).exactly(1);
+        mockMvc.perform(get("/api/authors").param("prefix", "terry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Terry Pratchett"))
+                .andExpect(jsonPath("$.items[0].bookCount").value(2))
+                .andExpect(jsonPath("$.items[0].nameKey").doesNotExist());
+
+        // One read of the directory entry, one of the books by id
+        assertQueries(mockMvc, get("/api/authors/{id}/books", book.getAuthorId()))
+                .hasStatus(200).exactly(2);
+        mockMvc.perform(get("/api/categories/{id}/books", book.getCategoryId()).param("sort", "rating"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/api/authors/{id}/books", -1)).andExpect(status().isNotFound());
+
+        BookListOptions options = new BookListOptions();
+        options.setLimit(1);
+        assertEquals(1, bookService.getBooksByAuthorId(book.getAuthorId(), options).size());
+    }
+
+    @Test
+    void backfillAssignsRowsWrittenWithoutIds() {
+        jdbcTemplate.update("INSERT INTO booksdigital (title, author, category, rating, price, views, featured, version) "
+                + "VALUES ('Legacy', 'Old Author', 'Archive', 3, 1.0, 0, FALSE, 0)");
+        assertEquals(Map.of(), counts(Dimension.AUTHOR, "old"));
+
+        directory.backfill();
+
+        Integer authorId = jdbcTemplate.queryForObject("SELECT author_id FROM booksdigital WHERE title = 'Legacy'", Integer.class);
+        assertNotNull(authorId);
+        assertEquals(Map.of("old author", 1), counts(Dimension.AUTHOR, "old"));
+        assertEquals(Map.of("archive", 1), counts(Dimension.CATEGORY, "arch"));
+    }
+
+    private Books save(String title, String author, String category) {
+        Books book = new Books();
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setCategory(category);
+        book.setRating(4);
+        return bookService.saveBook(book);
+    }
+
+    private Map<String, Integer> counts(Dimension dimension, String prefix) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (DirectoryEntry entry : directory.page(dimension, prefix, null, 200).getItems()) {
+            counts.put(entry.getNameKey(), entry.getBookCount());
+        }
+        return counts;
+    }
+
+    private static List<String> names(DirectoryPage page) {
+        return page.getItems().stream().map(DirectoryEntry::getName).map(String::valueOf).toList();
+    }
+}
@@ -0,0 +1,290 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.dto.BookPatch;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.entity.CatalogJob;
+import com.thedigitalshelf.books.entity.CatalogJobPartition;
+import com.thedigitalshelf.books.entity.User;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.repository.CatalogJobPartitionRepository;
+import com.thedigitalshelf.books.repository.CatalogJobRepository;
+import com.thedigitalshelf.books.repository.UserRepository;
+import com.thedigitalshelf.books.security.JwtUtil;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.CatalogJobRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jobs;DB_CLOSE_DELAY=-1",
+        "books.jobs.workers=2",
+        // Several chunks per partition even with a handful of books
+        "books.jobs.chunk-size=3",
+        "books.jobs.max-duty-cycle=1.0",
+        "books.jobs.min-pause-ms=0"
+})
+@AutoConfigureMockMvc
+class CatalogJobTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CatalogJobRunner jobRunner;
+
+    @Autowired
+    private CatalogJobRepository jobRepository;
+
+    @Autowired
+    private CatalogJobPartitionRepository partitionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RemoteCancel remoteCancel;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM booksdigital");
+        if (!userRepository.existsByUsername("curator")) {
+            userRepository.save(new User("curator", "unused", "ADMIN"));
+            userRepository.save(new User("browser", "unused", "USER"));
+        }
+    }
+
+    @Test
+    void patchJobUpdatesEveryMatchingBookInChunks() throws Exception {
+        List<Books> fantasy = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            fantasy.add(save("Fantasy " + i, "Fantasy"));
+        }
+        save("Outsider", "History");
+        Integer categoryId = fantasy.get(0).getCategoryId();
+
+        String body = "{\"type\":\"PATCH\",\"categoryId\":" + categoryId + ",\"patch\":{\"featured\":true,\"price\":9.5}}";
+        String response = mockMvc.perform(post("/api/admin/jobs").header("Authorization", bearer("curator"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.total").value(11))
+                .andExpect(jsonPath("$.patch.featured").value(true))
+                .andReturn().getResponse().getContentAsString();
+        long id = Long.parseLong(response.replaceAll("^\\{\"id\":(\\d+).*", "$1"));
+
+        CatalogJob job = await(id);
+        assertEquals(CatalogJob.Status.COMPLETED, job.getStatus());
+        assertEquals(11, job.getProcessed());
+        assertTrue(partitionRepository.findByJobIdOrderById(id).stream().allMatch(CatalogJobPartition::isDone));
+        assertEquals(11, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booksdigital WHERE featured = TRUE AND price = 9.5", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booksdigital WHERE category = 'History' AND featured = TRUE", Integer.class));
+
+        mockMvc.perform(get("/api/admin/jobs/" + id).header("Authorization", bearer("curator")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+        mockMvc.perform(post("/api/admin/jobs/" + id + "/cancel").header("Authorization", bearer("curator")))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void resumedJobStartsFromItsCheckpoint() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(save("Doomed " + i, "Pulp").getId());
+        }
+        // As left behind by an instance that stopped after deleting the first three books
+        CatalogJob job = new CatalogJob(CatalogJob.Type.DELETE, null, bookCategoryId(ids.get(0)), null, null, "curator");
+        job.setStatus(CatalogJob.Status.RUNNING);
+        job.setTotal(6);
+        job.setProcessed(3);
+        job = jobRepository.save(job);
+        partitionRepository.save(new CatalogJobPartition(job.getId(), 0, ids.get(2), ids.get(5)));
+
+        jobRunner.resume();
+        CatalogJob finished = await(job.getId());
+        assertEquals(CatalogJob.Status.COMPLETED, finished.getStatus());
+        assertEquals(6, finished.getProcessed());
+        assertEquals(ids.subList(0, 3), jdbcTemplate.queryForList("SELECT id FROM booksdigital ORDER BY id", Integer.class));
+    }
+
+    @Test
+    void cancelledJobsAreNotResumed() {
+        Books book = save("Survivor", "Pulp");
+        CatalogJob job = new CatalogJob(CatalogJob.Type.DELETE, null, book.getCategoryId(), null, null, "curator");
+        job = jobRepository.save(job);
+        partitionRepository.save(new CatalogJobPartition(job.getId(), 0, 0, book.getId()));
+
+        assertTrue(jobRunner.cancel(job.getId()));
+        jobRunner.resume();
+        assertEquals(CatalogJob.Status.CANCELLED, jobRepository.findById(job.getId()).orElseThrow().getStatus());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booksdigital", Integer.class));
+    }
+
+    @Test
+    void partitionsLeasedByAnotherInstanceAreLeftAlone() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(save("Shared " + i, "Pulp").getId());
+        }
+        CatalogJob job = new CatalogJob(CatalogJob.Type.DELETE, null, bookCategoryId(ids.get(0)), null, null, "curator");
+        job.setStatus(CatalogJob.Status.RUNNING);
+        job.setTotal(6);
+        job = jobRepository.save(job);
+        CatalogJobPartition mine = new CatalogJobPartition(job.getId(), 0, ids.get(0) - 1, ids.get(2));
+        CatalogJobPartition theirs = new CatalogJobPartition(job.getId(), 0, ids.get(2), ids.get(5));
+        theirs.setOwner("elsewhere");
+        theirs.setLeaseUntil(Instant.now().plus(1, ChronoUnit.HOURS));
+        partitionRepository.saveAll(List.of(mine, theirs));
+
+        jobRunner.resume();
+        awaitPartition(mine.getId());
+        assertEquals(ids.subList(3, 6), jdbcTemplate.queryForList("SELECT id FROM booksdigital ORDER BY id", Integer.class));
+        // The other instance's partition is still open, so the job isn't complete yet
+        assertEquals(CatalogJob.Status.RUNNING, jobRepository.findById(job.getId()).orElseThrow().getStatus());
+
+        // Once its lease has run out, the partition is taken over
+        jdbcTemplate.update("UPDATE catalog_job_partitions SET lease_until = ? WHERE id = ?",
+                Instant.now().minus(1, ChronoUnit.MINUTES), theirs.getId());
+        jobRunner.resume();
+        CatalogJob finished = await(job.getId());
+        assertEquals(CatalogJob.Status.COMPLETED, finished.getStatus());
+        assertEquals(6, finished.getProcessed());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booksdigital", Integer.class));
+    }
+
+    @Test
+    void cancelOnAnotherInstanceStopsWorkers() throws Exception {
+        List<Books> books = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            books.add(save("Remote " + i, "Serial"));
+        }
+        remoteCancel.armed = true;
+        CatalogJob job = jobRunner.submit(CatalogJob.Type.PATCH, null, books.get(0).getCategoryId(), null, featuredPatch(), "curator");
+
+        CatalogJob cancelled = await(job.getId());
+        // Without the status check the workers would get through all 24 books in this time
+        Thread.sleep(300);
+        assertEquals(CatalogJob.Status.CANCELLED, cancelled.getStatus());
+        // Each of the two workers stops at its next checkpoint, after at most one more chunk of 3
+        int patched = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booksdigital WHERE featured = TRUE", Integer.class);
+        assertTrue(patched <= 6, patched + " books patched after the cancel");
+        assertEquals(CatalogJob.Status.CANCELLED, jobRepository.findById(job.getId()).orElseThrow().getStatus());
+        assertFalse(partitionRepository.findByJobIdOrderById(job.getId()).stream().allMatch(CatalogJobPartition::isDone));
+    }
+
+    @Test
+    void jobsAreForAdminsOnly() throws Exception {
+        String body = "{\"type\":\"RECOMPUTE\"}";
+        mockMvc.perform(post("/api/admin/jobs").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().is4xxClientError());
+        mockMvc.perform(post("/api/admin/jobs").header("Authorization", bearer("browser"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/admin/jobs").header("Authorization", bearer("curator"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"type\":\"DELETE\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/admin/jobs").header("Authorization", bearer("curator"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isAccepted());
+    }
+
+    private Books save(String title, String category) {
+        Books book = new Books();
+        book.setTitle(title);
+        book.setAuthor("Anonymous");
+        book.setCategory(category);
+        book.setFeatured(false);
+        return bookService.saveBook(book);
+    }
+
+    private BookPatch featuredPatch() {
+        BookPatch patch = new BookPatch();
+        patch.setFeatured(true);
+        return patch;
+    }
+
+    private void awaitPartition(Long id) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            if (partitionRepository.findById(id).orElseThrow().isDone()) {
+                return;
+            }
+            Thread.sleep(25);
+        }
+        throw new AssertionError("partition " + id + " did not finish");
+    }
+
+    private Integer bookCategoryId(int id) {
+        return jdbcTemplate.queryForObject("SELECT category_id FROM booksdigital WHERE id = ?", Integer.class, id);
+    }
+
+    private String bearer(String username) {
+        return "Bearer " + jwtUtil.generateToken(username);
+    }
+
+    // Plays another instance cancelling running jobs straight in the database as soon as a chunk lands
+    @TestConfiguration
+    static class RemoteCancelConfig {
+        @Bean
+        RemoteCancel remoteCancel(JdbcTemplate jdbcTemplate) {
+            return new RemoteCancel(jdbcTemplate);
+        }
+    }
+
+    static class RemoteCancel {
+        private final JdbcTemplate jdbcTemplate;
+        volatile boolean armed;
+
+        RemoteCancel(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @EventListener
+        public void onCatalogChange(CatalogChangeEvent event) {
+            if (armed && event.getType() == CatalogChangeEvent.Type.UPDATED) {
+                armed = false;
+                jdbcTemplate.update("UPDATE catalog_jobs SET status = 'CANCELLED' WHERE status = 'RUNNING'");
+            }
+        }
+    }
+
+    private CatalogJob await(long id) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            CatalogJob job = jobRepository.findById(id).orElseThrow();
+            if (job.getStatus().isFinished()) {
+                return job;
+            }
+            Thread.sleep(25);
+        }
+        throw new AssertionError("job " + id + " did not finish");
+    }
+}
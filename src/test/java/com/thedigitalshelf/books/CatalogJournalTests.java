@@ -0,0 +1,255 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.journal.CatalogJournal;
+import com.thedigitalshelf.books.journal.JournalEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogJournalTests {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path dir;
+
+    private final List<CatalogJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        opened.forEach(journal -> ReflectionTestUtils.invokeMethod(journal, "stop"));
+    }
+
+    @Test
+    void recordsUseTheDocumentedLayout() throws IOException {
+        CatalogJournal journal = open();
+        journal.append(CatalogChangeEvent.Type.UPDATED, 42, 1_700_000_000_123L, 0);
+        journal.sync();
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segments().get(0)));
+        assertEquals(RECORDS_PER_SEGMENT * 32, bytes.capacity());
+        assertEquals(1, bytes.getLong(0));
+        assertEquals(1_700_000_000_123L, bytes.getLong(8));
+        assertEquals(42, bytes.getInt(16));
+        assertEquals(0, bytes.getInt(20));
+        assertEquals(CatalogChangeEvent.Type.UPDATED.ordinal() + 1, bytes.get(24));
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.slice(0, 28));
+        assertEquals((int) crc.getValue(), bytes.getInt(28));
+        // The next slot is still empty, which marks the end of the data
+        assertEquals(0, bytes.getLong(32));
+    }
+
+    @Test
+    void tornTailIsDroppedOnRestart() throws IOException {
+        CatalogJournal journal = open();
+        for (int i = 1; i <= 3; i++) {
+            journal.append(CatalogChangeEvent.Type.CREATED, i, i, 0);
+        }
+        close(journal);
+
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer first = ByteBuffer.allocate(32);
+            channel.read(first, 0);
+            // The third record was half written, and a stale but intact record sits behind it
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 2 * 32 + 16);
+            channel.write(first.flip(), 3 * 32);
+        }
+
+        CatalogJournal recovered = open();
+        assertEquals(List.of(1, 2), replayAll(recovered).stream().map(JournalEntry::bookId).toList());
+        assertEquals(2, recovered.getLastSequence());
+        assertEquals(3, recovered.append(CatalogChangeEvent.Type.CREATED, 30, 30, 0));
+        close(recovered);
+
+        // The stale record was cleared, so it doesn't resurface once the gap is filled
+        CatalogJournal reopened = open();
+        assertEquals(List.of(1, 2, 30), replayAll(reopened).stream().map(JournalEntry::bookId).toList());
+        assertEquals(3, reopened.getLastSequence());
+    }
+
+    @Test
+    void compactionKeepsLatestStateAndDropsDeletedBooks() throws IOException {
+        CatalogJournal journal = open();
+        journal.append(CatalogChangeEvent.Type.CREATED, 1, 1_000, 0);
+        journal.append(CatalogChangeEvent.Type.CREATED, 2, 1_000, 0);
+        journal.append(CatalogChangeEvent.Type.VIEWED, 2, 1_000, 1);
+        journal.append(CatalogChangeEvent.Type.UPDATED, 1, 2_000, 0);
+        journal.append(CatalogChangeEvent.Type.DELETED, 2, 2_000, 0);
+        journal.append(CatalogChangeEvent.Type.VIEWED, 1, 2_000, 1);
+        journal.append(CatalogChangeEvent.Type.VIEWED, 1, 3_000, 1);
+        journal.append(CatalogChangeEvent.Type.CREATED, 3, 3_000, 0);
+        journal.append(CatalogChangeEvent.Type.CREATED, 4, 3_000, 0);
+        assertEquals(3, segments().size());
+
+        assertTrue(journal.compact());
+        assertEquals(2, segments().size());
+        assertFalse(journal.compact());
+
+        List<JournalEntry> entries = replayAll(journal);
+        assertEquals(List.of(4L, 7L, 8L, 9L), entries.stream().map(JournalEntry::sequence).toList());
+        assertEquals(CatalogChangeEvent.Type.UPDATED, entries.get(0).type());
+        assertEquals(2, entries.get(1).value());
+        assertEquals(9, journal.getLastSequence());
+    }
+
+    @Test
+    void crashBeforeMergedSegmentsAreDeletedReplaysNothingTwice() throws IOException {
+        CatalogJournal journal = open();
+        journal.append(CatalogChangeEvent.Type.CREATED, 1, 1_000, 0);
+        journal.append(CatalogChangeEvent.Type.CREATED, 2, 1_000, 0);
+        journal.append(CatalogChangeEvent.Type.VIEWED, 1, 1_000, 1);
+        journal.append(CatalogChangeEvent.Type.UPDATED, 2, 1_000, 0);
+        journal.append(CatalogChangeEvent.Type.VIEWED, 1, 2_000, 1);
+        journal.append(CatalogChangeEvent.Type.CREATED, 3, 2_000, 0);
+        journal.append(CatalogChangeEvent.Type.VIEWED, 3, 2_000, 1);
+        journal.append(CatalogChangeEvent.Type.DELETED, 3, 2_000, 0);
+        journal.append(CatalogChangeEvent.Type.CREATED, 4, 3_000, 0);
+        Path second = segments().get(1);
+        byte[] secondBytes = Files.readAllBytes(second);
+
+        assertTrue(journal.compact());
+        List<JournalEntry> compacted = replayAll(journal);
+        assertEquals(List.of(1L, 4L, 5L, 8L, 9L), compacted.stream().map(JournalEntry::sequence).toList());
+        assertEquals(CatalogChangeEvent.Type.DELETED, compacted.get(3).type());
+        close(journal);
+
+        // The merged segment is back, as if the process died right after the compacted file was moved in
+        Files.write(second, secondBytes);
+        CatalogJournal restarted = open();
+        assertEquals(compacted.stream().map(JournalEntry::sequence).toList(),
+                replayAll(restarted).stream().map(JournalEntry::sequence).toList());
+        assertEquals(9, restarted.getLastSequence());
+    }
+
+    @Test
+    void concurrentCompactionsDoNotCorruptTheJournal() throws Exception {
+        CatalogJournal journal = open();
+        for (int i = 1; i <= 20; i++) {
+            journal.append(CatalogChangeEvent.Type.CREATED, i, i, 0);
+        }
+        List<CompletableFuture<Boolean>> compactions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            compactions.add(CompletableFuture.supplyAsync(journal::compact));
+        }
+        for (CompletableFuture<Boolean> compaction : compactions) {
+            compaction.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(20, replayAll(journal).size());
+        assertEquals(2, segments().size());
+    }
+
+    @Test
+    void compactionWaitsForRunningReplays() throws Exception {
+        CatalogJournal journal = open();
+        for (int i = 1; i <= 12; i++) {
+            journal.append(CatalogChangeEvent.Type.CREATED, i, i, 0);
+        }
+
+        List<CompletableFuture<Boolean>> compaction = new ArrayList<>();
+        List<JournalEntry> replayed = new ArrayList<>();
+        journal.replay(0, entry -> {
+            if (compaction.isEmpty()) {
+                compaction.add(CompletableFuture.supplyAsync(journal::compact));
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertFalse(compaction.get(0).isDone(), "compaction swapped files under a running replay");
+            }
+            replayed.add(entry);
+        });
+        assertEquals(12, replayed.size());
+        assertTrue(compaction.get(0).get(10, TimeUnit.SECONDS));
+        assertEquals(12, replayAll(journal).size());
+    }
+
+    @Test
+    void compactedViewsKeepTheirMinuteAcrossRestarts() {
+        long flushedMinute = System.currentTimeMillis() / 60_000 - 10;
+        long laterMinute = flushedMinute + 5;
+
+        CatalogJournal journal = open();
+        journal.append(CatalogChangeEvent.Type.CREATED, 7, flushedMinute * 60_000, 0);
+        for (int i = 0; i < 3; i++) {
+            journal.append(CatalogChangeEvent.Type.VIEWED, 7, flushedMinute * 60_000 + i * 1_000, 1);
+        }
+        for (int i = 0; i < 2; i++) {
+            journal.append(CatalogChangeEvent.Type.VIEWED, 7, laterMinute * 60_000 + i * 1_000, 1);
+        }
+        journal.append(CatalogChangeEvent.Type.UPDATED, 7, laterMinute * 60_000, 0);
+        for (int i = 0; i < 4; i++) {
+            journal.append(CatalogChangeEvent.Type.CREATED, 100 + i, laterMinute * 60_000, 0);
+        }
+        assertTrue(journal.compact());
+        close(journal);
+
+        // What ViewAnalyticsStore replays after a restart whose checkpoint is flushedMinute
+        CatalogJournal restarted = open();
+        long[] unflushed = {0};
+        long[] total = {0};
+        long last = restarted.replay(0, entry -> {
+            if (entry.type() == CatalogChangeEvent.Type.VIEWED) {
+                total[0] += entry.value();
+                if (entry.timestamp() / 60_000 > flushedMinute) {
+                    unflushed[0] += entry.value();
+                }
+            }
+        });
+        assertEquals(5, total[0]);
+        assertEquals(2, unflushed[0]);
+        assertEquals(11, last);
+        assertEquals(12, restarted.append(CatalogChangeEvent.Type.VIEWED, 7, laterMinute * 60_000, 1));
+    }
+
+    private CatalogJournal open() {
+        CatalogJournal journal = new CatalogJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentBytes", RECORDS_PER_SEGMENT * 32);
+        // Only explicit compact()/sync() calls in these tests
+        ReflectionTestUtils.setField(journal, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(journal, "compactAfterSegments", 1);
+        ReflectionTestUtils.invokeMethod(journal, "start");
+        opened.add(journal);
+        return journal;
+    }
+
+    private void close(CatalogJournal journal) {
+        opened.remove(journal);
+        ReflectionTestUtils.invokeMethod(journal, "stop");
+    }
+
+    private List<JournalEntry> replayAll(CatalogJournal journal) {
+        List<JournalEntry> entries = new ArrayList<>();
+        journal.replay(0, entries::add);
+        return entries;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.cluster.InvalidationTransport;
+import com.thedigitalshelf.books.cluster.LoopbackTransport;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import com.thedigitalshelf.books.event.ShelfChangeEvent;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.ShelfService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:invalidation;DB_CLOSE_DELAY=-1",
+        "books.invalidation.transport=loopback",
+        "books.invalidation.channel=invalidation_test",
+        "books.invalidation.instance-id=self",
+        // Only the startup announcement; tests send heartbeats themselves
+        "books.invalidation.heartbeat-ms=600000"
+})
+@RecordApplicationEvents
+class InvalidationBusTests {
+
+    private static final String CHANNEL = "invalidation_test";
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    private final BlockingQueue<String> broadcast = new LinkedBlockingQueue<>();
+    private LoopbackTransport peer;
+
+    @BeforeEach
+    void listen() {
+        peer = new LoopbackTransport(CHANNEL);
+        peer.start(new InvalidationTransport.Receiver() {
+            @Override
+            public void message(String message) {
+                if (!message.contains(":H:")) {
+                    broadcast.add(message);
+                }
+            }
+
+            @Override
+            public void lost(String reason) {
+            }
+        });
+    }
+
+    @AfterEach
+    void stopListening() {
+        peer.stop();
+    }
+
+    @Test
+    void localChangesAreBroadcastWithIncreasingVersions() throws InterruptedException {
+        Books book = new Books();
+        book.setTitle("The Left Hand of Darkness");
+        book.setAuthor("Ursula K. Le Guin");
+        Books saved = bookService.saveBook(book);
+        bookService.incrementViews(saved.getId());
+        bookService.deleteBook(saved.getId());
+
+        String created = broadcast.poll(5, TimeUnit.SECONDS);
+        String deleted = broadcast.poll(5, TimeUnit.SECONDS);
+        assertTrue(created != null && created.matches("self:\\d+:C:" + saved.getId()), String.valueOf(created));
+        assertTrue(deleted != null && deleted.matches("self:\\d+:D:" + saved.getId()), String.valueOf(deleted));
+        assertEquals(version(created) + 1, version(deleted));
+        // Views stay local
+        assertNull(broadcast.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void remoteChangesArePublishedAsRemoteEvents() {
+        LoopbackTransport.deliver(CHANNEL, "peer-a:0:H:0");
+        LoopbackTransport.deliver(CHANNEL, "peer-a:1:U:42");
+        LoopbackTransport.deliver(CHANNEL, "self:99:U:7");
+
+        List<CatalogChangeEvent> changes = events.stream(CatalogChangeEvent.class).toList();
+        assertEquals(1, changes.size());
+        assertEquals(CatalogChangeEvent.Type.UPDATED, changes.get(0).getType());
+        assertEquals(42, changes.get(0).getBookId());
+        assertEquals("peer-a", changes.get(0).getOrigin());
+        assertTrue(changes.get(0).isRemote());
+        assertEquals(0, events.stream(CatalogRefreshEvent.class).count());
+    }
+
+    @Test
+    void shelfWritesTravelAsShelfEvents() throws InterruptedException {
+        shelfService.add(77, 3);
+        String sent = broadcast.poll(5, TimeUnit.SECONDS);
+        assertTrue(sent != null && sent.matches("self:\\d+:S:77"), String.valueOf(sent));
+
+        LoopbackTransport.deliver(CHANNEL, "peer-c:0:H:0");
+        LoopbackTransport.deliver(CHANNEL, "peer-c:1:S:78");
+        List<ShelfChangeEvent> remote = events.stream(ShelfChangeEvent.class).filter(ShelfChangeEvent::isRemote).toList();
+        assertEquals(1, remote.size());
+        assertEquals(78, remote.get(0).getUserId());
+        assertEquals("peer-c", remote.get(0).getOrigin());
+        assertEquals(0, events.stream(CatalogChangeEvent.class).count());
+    }
+
+    @Test
+    void versionGapsTriggerRefresh() {
+        LoopbackTransport.deliver(CHANNEL, "peer-b:1:C:1");
+        LoopbackTransport.deliver(CHANNEL, "peer-b:2:C:2");
+        assertEquals(0, events.stream(CatalogRefreshEvent.class).count());
+
+        LoopbackTransport.deliver(CHANNEL, "peer-b:4:C:4");
+        assertEquals(1, events.stream(CatalogRefreshEvent.class).count());
+
+        // Redelivery is ignored, and a heartbeat ahead of the last change reveals a lost trailing message
+        LoopbackTransport.deliver(CHANNEL, "peer-b:4:C:4");
+        LoopbackTransport.deliver(CHANNEL, "peer-b:5:H:0");
+        assertEquals(2, events.stream(CatalogRefreshEvent.class).count());
+        assertEquals(List.of(1, 2, 4), remoteBookIds());
+
+        LoopbackTransport.deliver(CHANNEL, "not a message");
+        assertEquals(3, remoteBookIds().size());
+    }
+
+    private List<Integer> remoteBookIds() {
+        List<Integer> ids = new ArrayList<>();
+        events.stream(CatalogChangeEvent.class).filter(CatalogChangeEvent::isRemote).forEach(e -> ids.add(e.getBookId()));
+        return ids;
+    }
+
+    private static long version(String message) {
+        return Long.parseLong(message.split(":")[1]);
+    }
+}
@@ -0,0 +1,64 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.PublishedDateBackfill;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:backfill;DB_CLOSE_DELAY=-1",
+        "books.published-date.backfill-batch-size=2"
+})
+class PublishedDateBackfillTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private PublishedDateBackfill backfill;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyRowsAreExaminedOnlyOnce() {
+        int parseable = save("Parseable", "March 2004").getId();
+        int unparseable = save("Unparseable", "sometime").getId();
+        save("Undated", null);
+        // As saved before published_on was derived
+        jdbcTemplate.update("UPDATE booksdigital SET published_on = NULL");
+        jdbcTemplate.update("DELETE FROM published_date_backfill");
+
+        assertEquals(2, backfill.backfill());
+        assertEquals(LocalDate.of(2004, 3, 1), publishedOn(parseable));
+        assertNull(publishedOn(unparseable));
+
+        assertEquals(0, backfill.backfill());
+
+        int later = save("Later", "sometime else").getId();
+        jdbcTemplate.update("UPDATE booksdigital SET published_on = NULL WHERE id = ?", later);
+        assertEquals(1, backfill.backfill());
+    }
+
+    private Books save(String title, String publishedDate) {
+        Books book = new Books();
+        book.setTitle(title);
+        book.setAuthor("Anonymous");
+        book.setCategory("Archive");
+        book.setFeatured(false);
+        book.setPublishedDate(publishedDate);
+        return bookService.saveBook(book);
+    }
+
+    private LocalDate publishedOn(int id) {
+        return jdbcTemplate.queryForObject("SELECT published_on FROM booksdigital WHERE id = ?", LocalDate.class, id);
+    }
+}
@@ -0,0 +1,75 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.util.PublishedDateParser;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PublishedDateParserTests {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "2004-03-15|2004-03-15",
+            "2004/03/15|2004-03-15",
+            "2004-3-5|2004-03-05",
+            "2004.03.15|2004-03-15",
+            "15 March 2004|2004-03-15",
+            "15 Mar 2004|2004-03-15",
+            "March 15, 2004|2004-03-15",
+            "Mar 15, 2004|2004-03-15",
+            "March 15 2004|2004-03-15",
+            "Mar 15 2004|2004-03-15",
+            "3/15/2004|2004-03-15",
+            "15.3.2004|2004-03-15",
+            "'  March   15,  2004 '|2004-03-15"
+    })
+    void parsesFullDates(String text, LocalDate expected) {
+        assertEquals(expected, PublishedDateParser.parse(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "2004-03|2004-03-01",
+            "2004/03|2004-03-01",
+            "March 2004|2004-03-01",
+            "Mar 2004|2004-03-01",
+            "'March, 2004'|2004-03-01",
+            "3/2004|2004-03-01"
+    })
+    void monthsResolveToTheirFirstDay(String text, LocalDate expected) {
+        assertEquals(expected, PublishedDateParser.parse(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "2004-03-15T10:30:00Z|2004-03-15",
+            "2004-03-15 10:30|2004-03-15"
+    })
+    void timestampsKeepOnlyTheDate(String text, LocalDate expected) {
+        assertEquals(expected, PublishedDateParser.parse(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "1999|1999-01-01",
+            "circa 1887|1887-01-01",
+            "Spring 2010 edition|2010-01-01",
+            "First edition, 1951|1951-01-01"
+    })
+    void fallsBackToTheYear(String text, LocalDate expected) {
+        assertEquals(expected, PublishedDateParser.parse(text));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"   ", "unknown", "n/a", "12345", "0999", "2100"})
+    void unparseableValuesAreNull(String text) {
+        assertNull(PublishedDateParser.parse(text));
+    }
+}
@@ -0,0 +1,65 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.diagnostics.QueryStats;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Locks in how many SQL statements an endpoint runs, e.g.
+ * {@code assertQueries(mockMvc, get("/api/books/1")).hasStatus(200).atMost(1)}.
+ */
+public final class QueryAssertions {
+
+    private final String description;
+    private final QueryStats stats;
+    private final MvcResult result;
+
+    private QueryAssertions(String description, QueryStats stats, MvcResult result) {
+        this.description = description;
+        this.stats = stats;
+        this.result = result;
+    }
+
+    public static QueryAssertions assertQueries(MockMvc mockMvc, RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        QueryStats stats = (QueryStats) result.getRequest().getAttribute(QueryStats.REQUEST_ATTRIBUTE);
+        assertNotNull(stats, "No query stats recorded; is QueryBudgetFilter enabled?");
+        return new QueryAssertions(result.getRequest().getMethod() + " " + result.getRequest().getRequestURI(), stats, result);
+    }
+
+    public static QueryAssertions assertQueries(Runnable action) {
+        return new QueryAssertions("block", QueryStats.capture(action), null);
+    }
+
+    public QueryAssertions atMost(int statements) {
+        assertTrue(stats.getStatements() <= statements,
+                () -> description + " ran " + stats + ", expected at most " + statements + " statement(s): " + stats.getSql());
+        return this;
+    }
+
+    public QueryAssertions exactly(int statements) {
+        assertEquals(statements, stats.getStatements(),
+                () -> description + " ran " + stats + ", expected exactly " + statements + " statement(s): " + stats.getSql());
+        return this;
+    }
+
+    public QueryAssertions rowsAtMost(long rows) {
+        assertTrue(stats.getRows() <= rows, () -> description + " touched " + stats + ", expected at most " + rows + " row(s)");
+        return this;
+    }
+
+    public QueryAssertions hasStatus(int status) {
+        assertNotNull(result, "Status is only available for MockMvc requests");
+        assertEquals(status, result.getResponse().getStatus(), description + " status");
+        return this;
+    }
+
+    public QueryStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,195 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.reactive.ReactiveCatalogServer;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives /api/books (servlet, a thread per request) and /api/v2/books (event loop, R2DBC) with the
+ * same number of concurrent clients and prints throughput, p99 latency, peak server threads and
+ * heap growth per open connection. Opt-in, since it runs for a while:
+ *
+ *   mvn test -Dtest=ReactiveCatalogBenchmarkTests -Dbenchmark=true [-Dbenchmark.concurrency=512]
+ *
+ * The default in-memory H2 database is shared by both stacks, but r2dbc-h2 wraps the blocking H2
+ * engine, so there the comparison mostly measures the web layer. For a real comparison point
+ * benchmark.jdbc-url and benchmark.r2dbc-url (plus benchmark.username/password) at an existing,
+ * already populated Postgres database; nothing is created or deleted there.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "books.reactive.enabled=true",
+        "books.reactive.port=0",
+        "books.query-budget.enabled=false",
+        "logging.level.com.thedigitalshelf=INFO",
+        "server.tomcat.max-connections=10000"
+})
+class ReactiveCatalogBenchmarkTests {
+
+    private static final String EXTERNAL_JDBC_URL = System.getProperty("benchmark.jdbc-url");
+    private static final int BOOKS = 2_000;
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 512);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("benchmark.warmup-seconds", 5));
+    private static final Duration MEASURED = Duration.ofSeconds(Long.getLong("benchmark.seconds", 15));
+    private static final String QUERY = "?sort=rating&limit=";
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        if (EXTERNAL_JDBC_URL == null) {
+            registry.add("spring.datasource.url", () -> "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+            registry.add("books.reactive.r2dbc-url", () -> "r2dbc:h2:mem:///bench;DB_CLOSE_DELAY=-1");
+            return;
+        }
+        registry.add("spring.datasource.url", () -> EXTERNAL_JDBC_URL);
+        registry.add("spring.datasource.driver-class-name", () -> "");
+        registry.add("spring.datasource.username", () -> System.getProperty("benchmark.username", ""));
+        registry.add("spring.datasource.password", () -> System.getProperty("benchmark.password", ""));
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("books.reactive.r2dbc-url", () -> System.getProperty("benchmark.r2dbc-url"));
+    }
+
+    @LocalServerPort
+    private int servletPort;
+
+    @Autowired
+    private ReactiveCatalogServer reactiveServer;
+
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void compareServletAndReactiveStacks() throws Exception {
+        if (EXTERNAL_JDBC_URL == null) {
+            seed();
+        }
+        String servlet = "http://localhost:" + servletPort + "/api/books" + QUERY;
+        String reactive = "http://localhost:" + reactiveServer.getPort() + "/api/v2/books" + QUERY;
+
+        System.out.printf("%d concurrent clients, %d s per run%n", CONCURRENCY, MEASURED.toSeconds());
+        System.out.printf("%-9s %10s %10s %14s %14s %8s%n", "stack", "req/s", "p99(ms)", "server threads", "heap/conn(KB)", "errors");
+        // Worker threads are told apart by name: Tomcat's executor vs Reactor Netty's event loops
+        for (String[] stack : new String[][]{{"servlet", servlet, "http-nio-"}, {"reactive", reactive, "reactor-http-"}}) {
+            run(stack[1], stack[2], WARMUP);
+            Result result = run(stack[1], stack[2], MEASURED);
+            System.out.printf("%-9s %10.0f %10.1f %14d %14.1f %8d%n", stack[0], result.throughput(), result.p99Millis(),
+                    result.peakThreads(), result.heapPerConnectionBytes() / 1024.0, result.errors());
+            assertTrue(result.requests() > 0, stack[0] + " served no requests");
+            assertEquals(0, result.errors(), stack[0] + " returned errors");
+        }
+    }
+
+    private void seed() {
+        if (bookService.getTotalBooks() >= BOOKS) {
+            return;
+        }
+        for (int i = 1; i <= BOOKS; i++) {
+            Books book = new Books("Title " + i, "Author " + (i % 150), "Publisher " + (i % 20), String.valueOf(1950 + i % 70),
+                    "A fairly ordinary description of book number " + i + " for benchmarking purposes.",
+                    "Category " + (i % 12), "https://covers.example.com/" + i + ".jpg", "https://example.com/books/" + i,
+                    i % 5 + 1, 9.99f + i % 30, i % 17 == 0);
+            bookService.saveBook(book);
+        }
+    }
+
+    // Each client sends its next request as soon as the previous answer is read; limits vary so
+    // the servlet side's request coalescing can't collapse everything into one query
+    private Result run(String baseUrl, String serverThreadPrefix, Duration duration) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+        AtomicInteger peakThreads = new AtomicInteger(serverThreads(threads, serverThreadPrefix));
+        AtomicLong peakHeap = new AtomicLong(baselineHeap);
+        AtomicInteger errors = new AtomicInteger();
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<long[]> latencies = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int c = 0; c < CONCURRENCY; c++) {
+                int client = c;
+                futures.add(clients.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    for (int i = 0; System.nanoTime() < deadline; i++) {
+                        URI uri = URI.create(baseUrl + (1 + (client + i) % 50));
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(samples, count);
+                }));
+            }
+            while (System.nanoTime() < deadline) {
+                peakThreads.accumulateAndGet(serverThreads(threads, serverThreadPrefix), Math::max);
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                Thread.sleep(50);
+            }
+            for (Future<long[]> future : futures) {
+                latencies.add(future.get());
+            }
+        }
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        double p99 = all.length == 0 ? 0 : all[Math.min(all.length - 1, (int) (all.length * 0.99))] / 1_000_000.0;
+        return new Result(all.length, all.length / (double) duration.toSeconds(), p99, peakThreads.get(),
+                (peakHeap.get() - baselineHeap) / (double) CONCURRENCY, errors.get());
+    }
+
+    private static int serverThreads(ThreadMXBean threads, String prefix) {
+        int count = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private record Result(long requests, double throughput, double p99Millis, int peakThreads,
+                          double heapPerConnectionBytes, int errors) {
+    }
+}
@@ -0,0 +1,188 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.reactive.ReactiveBookRepository;
+import com.thedigitalshelf.books.reactive.ReactiveCatalogServer;
+import com.thedigitalshelf.books.security.JwtUtil;
+import com.thedigitalshelf.books.security.TokenRevocationService;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "books.reactive.enabled=true",
+        "books.reactive.port=0",
+        "books.reactive.r2dbc-url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1"
+})
+class ReactiveCatalogTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReactiveCatalogServer server;
+
+    @Autowired
+    private ReactiveBookRepository repository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenRevocationService revocations;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private WebTestClient client;
+    private final List<Books> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM booksdigital");
+        saved.clear();
+        for (int i = 0; i < 20; i++) {
+            Books book = new Books();
+            book.setTitle("Book " + i);
+            book.setAuthor("Author " + (i % 4));
+            book.setCategory("Fiction");
+            book.setRating(i % 5 + 1);
+            book.setPrice(i);
+            book.setFeatured(i % 3 == 0);
+            book.setPublishedDate(i % 6 == 0 ? "unknown" : String.valueOf(1990 + i));
+            saved.add(bookService.saveBook(book));
+        }
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + server.getPort()).build();
+    }
+
+    @Test
+    void sortedListsMatchTheServletApi() {
+        BookListOptions options = new BookListOptions();
+        options.setSort("publishedDate");
+        options.setDirection("asc");
+        options.setLimit(15);
+        List<Integer> expected = bookService.getAllBooks(options).stream().map(Books::getId).toList();
+
+        List<Books> books = client.get().uri("/api/v2/books?sort=publishedDate&direction=asc&limit=15")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Books.class)
+                .returnResult().getResponseBody();
+        assertEquals(expected, books.stream().map(Books::getId).toList());
+
+        client.get().uri("/api/v2/books/rating/4?sort=price&publishedFrom=2000-01-01")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Books.class).hasSize(3);
+        client.get().uri("/api/v2/books/author/AUTHOR 1").exchange().expectBodyList(Books.class).hasSize(5);
+        client.get().uri("/api/v2/books/search?query=Book 1").exchange().expectBodyList(Books.class).hasSize(11);
+        client.get().uri("/api/v2/books/featured").exchange().expectBodyList(Books.class).hasSize(7);
+    }
+
+    @Test
+    void listsAreOnlyCappedWhenALimitIsRequested() {
+        Object service = AopTestUtils.getTargetObject(bookService);
+        ReflectionTestUtils.setField(service, "maxListLimit", 5);
+        ReflectionTestUtils.setField(repository, "maxListLimit", 5);
+        try {
+            BookListOptions options = new BookListOptions();
+            options.setSort("price");
+            assertEquals(20, bookService.getAllBooks(options).size());
+            client.get().uri("/api/v2/books?sort=price").exchange().expectBodyList(Books.class).hasSize(20);
+
+            options.setLimit(50);
+            assertEquals(5, bookService.getAllBooks(options).size());
+            client.get().uri("/api/v2/books?sort=price&limit=50").exchange().expectBodyList(Books.class).hasSize(5);
+        } finally {
+            ReflectionTestUtils.setField(service, "maxListLimit", 500);
+            ReflectionTestUtils.setField(repository, "maxListLimit", 500);
+        }
+    }
+
+    @Test
+    void badListParametersAreRejected() {
+        client.get().uri("/api/v2/books?sort=title").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Sort must be one of publishedDate, rating, price, views");
+        client.get().uri("/api/v2/books?direction=up").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/v2/books?publishedFrom=yesterday").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/v2/books/rating/high").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void listsStreamAsNdjson() {
+        List<Books> streamed = client.get().uri("/api/v2/books")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Books.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+        assertEquals(saved.size(), streamed.size());
+    }
+
+    @Test
+    void singleBooksAndBatchesNeedAValidToken() {
+        int id = saved.get(3).getId();
+        client.get().uri("/api/v2/books/" + id).exchange().expectStatus().isUnauthorized();
+        client.get().uri("/api/v2/books/" + id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer not-a-token")
+                .exchange().expectStatus().isUnauthorized();
+
+        String token = jwtUtil.generateToken("reader");
+        client.get().uri("/api/v2/books/" + id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.title").isEqualTo("Book 3");
+        client.get().uri("/api/v2/books/-1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange().expectStatus().isNotFound();
+
+        BookBatchResponse batch = client.get().uri("/api/v2/books/batch?ids=" + saved.get(5).getId() + ",-7," + saved.get(1).getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BookBatchResponse.class)
+                .returnResult().getResponseBody();
+        assertEquals(List.of(saved.get(5).getId(), saved.get(1).getId()), batch.getBooks().stream().map(Books::getId).toList());
+        assertEquals(List.of(-7), batch.getMissing());
+
+        String revoked = jwtUtil.generateToken("leaver");
+        revocations.revoke(jwtUtil.parseClaims(revoked));
+        client.get().uri("/api/v2/books/" + id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + revoked)
+                .exchange().expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void statsMatchTheServletApi() {
+        client.get().uri("/api/v2/books/stats/total").exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).isEqualTo(bookService.getTotalBooks());
+        client.get().uri("/api/v2/books/stats/average-rating").exchange()
+                .expectStatus().isOk()
+                .expectBody(Double.class).isEqualTo(bookService.getAverageRating());
+        client.get().uri("/api/v2/books/authors").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(4);
+    }
+}
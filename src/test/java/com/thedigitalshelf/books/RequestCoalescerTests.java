@@ -0,0 +1,147 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import com.thedigitalshelf.books.service.RequestCoalescer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTests {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coalescer, "timeoutMs", 5_000L);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneCallButNotItsResult() throws Exception {
+        Future<List<String>> leader = callers.submit(() -> coalescer.execute("key", blocking(() -> new ArrayList<>(List.of("a", "b"))), ArrayList::new));
+        awaitCalls(1);
+        List<Future<List<String>>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(callers.submit(() -> coalescer.execute("key", blocking(() -> new ArrayList<>(List.of("other"))), ArrayList::new)));
+        }
+        awaitStat("deduplicated", 5);
+        release.countDown();
+
+        List<List<String>> results = new ArrayList<>();
+        results.add(leader.get(5, TimeUnit.SECONDS));
+        for (Future<List<String>> follower : followers) {
+            results.add(follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1L, coalescer.getStats().get("executions"));
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(List.of("a", "b"), results.get(i));
+            for (int j = i + 1; j < results.size(); j++) {
+                assertNotSame(results.get(i), results.get(j));
+            }
+        }
+        assertEquals(0L, coalescer.getStats().get("inFlight"));
+    }
+
+    @Test
+    void followersGiveUpAfterTheTimeout() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "timeoutMs", 100L);
+        Future<String> leader = callers.submit(() -> coalescer.execute("slow", blocking(() -> "done")));
+        awaitCalls(1);
+
+        IllegalStateException timeout = assertThrows(IllegalStateException.class, () -> coalescer.execute("slow", () -> "unused"));
+        assertTrue(timeout.getMessage().contains("slow"));
+        assertEquals(1L, coalescer.getStats().get("timeouts"));
+
+        release.countDown();
+        assertEquals("done", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void followersSeeTheLeadersFailure() throws Exception {
+        Future<String> leader = callers.submit(() -> coalescer.execute("broken", blocking(() -> {
+            throw new IllegalArgumentException("bad query");
+        })));
+        awaitCalls(1);
+        Future<String> follower = callers.submit(() -> coalescer.execute("broken", () -> "unused"));
+        awaitStat("deduplicated", 1);
+        release.countDown();
+
+        for (Future<String> caller : List.of(leader, follower)) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+            assertEquals("bad query", failure.getCause().getMessage());
+        }
+        assertEquals(1L, coalescer.getStats().get("failures"));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void callersAfterAWriteDoNotJoinAnOlderQuery() throws Exception {
+        Future<String> before = callers.submit(() -> coalescer.execute("book:1", blocking(() -> "old title")));
+        awaitCalls(1);
+
+        // A view doesn't detach the query, an update does
+        coalescer.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, 1));
+        assertEquals(1L, coalescer.getStats().get("inFlight"));
+        coalescer.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.UPDATED, 1));
+        assertEquals("new title", coalescer.execute("book:1", () -> "new title"));
+        assertEquals(2L, coalescer.getStats().get("executions"));
+
+        release.countDown();
+        assertEquals("old title", before.get(5, TimeUnit.SECONDS));
+    }
+
+    private <T> Supplier<T> blocking(Supplier<T> result) {
+        return () -> {
+            calls.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result.get();
+        };
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        for (int i = 0; i < 200 && calls.get() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, calls.get());
+    }
+
+    private void awaitStat(String name, long expected) throws InterruptedException {
+        for (int i = 0; i < 200 && coalescer.getStats().get(name) < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, coalescer.getStats().get(name));
+    }
+}
@@ -0,0 +1,267 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.dto.BookListOptions;
+import com.thedigitalshelf.books.dto.DirectoryPage;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.entity.DirectoryEntry;
+import com.thedigitalshelf.books.sharding.BookShards;
+import com.thedigitalshelf.books.sharding.ShardRoutingDataSource;
+import com.thedigitalshelf.books.sharding.ShardSchemaInitializer;
+import com.thedigitalshelf.books.sharding.ShardsBusyException;
+import com.thedigitalshelf.books.service.BookService;
+import com.thedigitalshelf.books.service.CatalogDirectory;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "books.sharding.enabled=true",
+        "books.sharding.additional-urls=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.connection-timeout=7000"
+})
+class ShardedCatalogTests {
+
+    private static final String[] CATEGORIES = {"Fiction", "History", "Science", "Poetry", "Travel", "Cooking"};
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookShards shards;
+
+    @Autowired
+    private CatalogDirectory directory;
+
+    @Autowired
+    private ShardSchemaInitializer schemaInitializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final List<Books> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            shards.onShard(shard, () -> jdbcTemplate.update("DELETE FROM booksdigital"));
+        }
+        saved.clear();
+        for (int i = 0; i < 30; i++) {
+            Books book = new Books();
+            book.setTitle("Book " + i);
+            book.setAuthor("Author " + (i % 7));
+            book.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            book.setRating(i % 5 + 1);
+            book.setPrice(i);
+            book.setPublishedDate(String.valueOf(1990 + i));
+            saved.add(bookService.saveBook(book));
+        }
+    }
+
+    @Test
+    void booksLiveOnTheShardTheirIdNames() {
+        assertEquals(3, shards.getShardCount());
+        int total = 0;
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            int current = shard;
+            List<Integer> ids = shards.onShard(shard, () -> jdbcTemplate.queryForList("SELECT id FROM booksdigital", Integer.class));
+            assertFalse(ids.isEmpty(), "shard " + current + " is empty");
+            ids.forEach(id -> assertEquals(current, shards.shardOf(id), "book " + id + " on shard " + current));
+            total += ids.size();
+        }
+        assertEquals(30, total);
+    }
+
+    @Test
+    void everyShardPoolIsConfiguredAndClosedWithTheRoutingDataSource() throws Exception {
+        ShardRoutingDataSource routing = dataSource.unwrap(ShardRoutingDataSource.class);
+        Map<Object, DataSource> pools = routing.getResolvedDataSources();
+        assertEquals(3, pools.size());
+        pools.forEach((shard, pool) -> {
+            HikariDataSource hikari = (HikariDataSource) pool;
+            assertEquals(7000, hikari.getConnectionTimeout(), "shard " + shard);
+            assertTrue(hikari.getPoolName().endsWith("-shard-" + shard));
+        });
+
+        // A standalone copy, so the shared context keeps its pools
+        ShardRoutingDataSource copy = new ShardRoutingDataSource();
+        HikariDataSource first = new HikariDataSource();
+        first.setJdbcUrl("jdbc:h2:mem:closing0");
+        HikariDataSource second = new HikariDataSource();
+        second.setJdbcUrl("jdbc:h2:mem:closing1");
+        copy.setTargetDataSources(Map.of(0, first, 1, second));
+        copy.afterPropertiesSet();
+        first.getConnection().close();
+        second.getConnection().close();
+
+        copy.close();
+        assertTrue(first.isClosed());
+        assertTrue(second.isClosed());
+    }
+
+    @Test
+    void booksOnTheWrongShardAreRefused() {
+        schemaInitializer.verifyPlacement();
+
+        // As if the shard count had changed under an existing catalog
+        Books book = saved.get(0);
+        int wrongShard = (shards.shardOf(book.getId()) + 1) % shards.getShardCount();
+        shards.onShard(wrongShard, () -> jdbcTemplate.update(
+                "INSERT INTO booksdigital (id, title, author, category, featured, rating, price, views, version) VALUES (?, 'Stray', 'Nobody', 'Fiction', FALSE, 1, 1, 0, 0)",
+                book.getId()));
+        IllegalStateException error = assertThrows(IllegalStateException.class, schemaInitializer::verifyPlacement);
+        assertTrue(error.getMessage().contains("shard " + wrongShard), error.getMessage());
+    }
+
+    @Test
+    void pointLookupsAndWritesAreRouted() {
+        Books book = saved.get(7);
+        assertEquals("Book 7", bookService.getBookById(book.getId()).orElseThrow().getTitle());
+        assertEquals(1, bookService.incrementViews(book.getId()));
+        assertEquals(1, bookService.getBookById(book.getId()).orElseThrow().getViews());
+
+        BookBatchResponse batch = bookService.getBooksByIds(List.of(saved.get(3).getId(), saved.get(1).getId(), 999_999));
+        assertEquals(List.of("Book 3", "Book 1"), batch.getBooks().stream().map(Books::getTitle).toList());
+        assertEquals(List.of(999_999), batch.getMissing());
+
+        assertTrue(bookService.deleteBook(book.getId()));
+        assertFalse(bookService.existsById(book.getId()));
+        assertEquals(29, bookService.getTotalBooks());
+    }
+
+    @Test
+    void scatterGatherMergesEveryShard() {
+        assertEquals(30, bookService.getAllBooks().size());
+        assertEquals(30, bookService.searchBooks("Book").size());
+        assertEquals(7, bookService.getAllAuthors().size());
+        assertEquals(30, bookService.getTotalBooks());
+        double expectedAverage = saved.stream().mapToInt(Books::getRating).average().orElseThrow();
+        assertEquals(expectedAverage, bookService.getAverageRating(), 1e-9);
+    }
+
+    @Test
+    void concurrentScattersAllSeeEveryShard() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> counts = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                counts.add(callers.submit(() -> bookService.getAllBooks().size()));
+            }
+            for (Future<Integer> count : counts) {
+                assertEquals(30, count.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void saturatedScatterFailsFast() throws Exception {
+        // 20 pool threads (two other shards x 10 connections) plus 64 queued tasks; each caller needs two
+        int callerCount = 60;
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(callerCount);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int i = 0; i < callerCount; i++) {
+                results.add(callers.submit(() -> {
+                    try {
+                        return shards.scatter(() -> {
+                            try {
+                                release.await(20, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return 1;
+                        });
+                    } catch (ShardsBusyException e) {
+                        rejected.incrementAndGet();
+                        return List.of();
+                    }
+                }));
+            }
+            for (int i = 0; i < 200 && rejected.get() == 0; i++) {
+                Thread.sleep(25);
+            }
+            assertTrue(rejected.get() > 0, "no scatter was rejected");
+            release.countDown();
+
+            int completed = 0;
+            for (Future<List<Integer>> result : results) {
+                List<Integer> value = result.get(30, TimeUnit.SECONDS);
+                if (!value.isEmpty()) {
+                    assertEquals(List.of(1, 1, 1), value);
+                    completed++;
+                }
+            }
+            assertEquals(callerCount, completed + rejected.get());
+            assertTrue(completed > 0);
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+        // The pool recovers once the burst has drained
+        assertEquals(30, bookService.getTotalBooks());
+    }
+
+    @Test
+    void sortedListsAreMergedAcrossShards() {
+        BookListOptions options = new BookListOptions();
+        options.setSort("price");
+        options.setDirection("desc");
+        options.setLimit(5);
+        List<Float> prices = bookService.getAllBooks(options).stream().map(Books::getPrice).toList();
+        assertEquals(List.of(29f, 28f, 27f, 26f, 25f), prices);
+
+        options.setSort("rating");
+        options.setLimit(8);
+        List<Books> topRated = bookService.getAllBooks(options);
+        List<Books> expected = saved.stream()
+                .sorted(Comparator.comparingInt(Books::getRating).thenComparingInt(Books::getId).reversed())
+                .limit(8)
+                .toList();
+        assertEquals(expected.stream().map(Books::getId).toList(), topRated.stream().map(Books::getId).toList());
+    }
+
+    @Test
+    void directoryCountsAndLookupsSpanShards() {
+        // setUp clears the books behind the directory's back; recount from what is there now
+        directory.recount();
+        DirectoryPage authors = directory.page(CatalogDirectory.Dimension.AUTHOR, "Author", null, 10);
+        assertEquals(7, authors.getItems().size());
+        assertEquals(30, authors.getItems().stream().mapToInt(DirectoryEntry::getBookCount).sum());
+
+        int authorId = saved.get(0).getAuthorId();
+        List<Books> books = bookService.getBooksByAuthorId(authorId, new BookListOptions());
+        assertEquals(Set.of(0, 7, 14, 21, 28), books.stream().map(book -> Integer.parseInt(book.getTitle().substring(5))).collect(Collectors.toSet()));
+        assertTrue(books.stream().map(book -> shards.shardOf(book.getId())).distinct().count() > 1);
+    }
+}
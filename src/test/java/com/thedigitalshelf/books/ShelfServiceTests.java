@@ -0,0 +1,152 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.entity.User;
+import com.thedigitalshelf.books.event.CatalogRefreshEvent;
+import com.thedigitalshelf.books.event.ShelfChangeEvent;
+import com.thedigitalshelf.books.repository.UserRepository;
+import com.thedigitalshelf.books.repository.UserShelfRepository;
+import com.thedigitalshelf.books.service.ShelfService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shelves;DB_CLOSE_DELAY=-1",
+        "books.shelf.max-books=3"
+})
+class ShelfServiceTests {
+
+    @Autowired
+    private ShelfService shelfService;
+
+    @Autowired
+    private UserShelfRepository shelfRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void changesArePersistedBeforeTheyAreAcknowledged() {
+        long userId = 1001;
+        assertTrue(shelfService.add(userId, 7));
+        assertTrue(shelfService.add(userId, 9));
+        assertEquals(2, storedCount(userId));
+
+        assertTrue(shelfService.remove(userId, 7));
+        assertFalse(shelfService.remove(userId, 7));
+        assertEquals(1, storedCount(userId));
+
+        // A fresh instance, as after a crash, sees every acknowledged change
+        assertArrayEquals(new int[]{9}, otherInstance(10).getBookIds(userId));
+    }
+
+    @Test
+    void instancesDoNotOverwriteEachOthersChanges() {
+        long userId = 1002;
+        ShelfService other = otherInstance(10);
+        // Both instances cache the empty shelf before either writes
+        assertEquals(0, shelfService.getBookIds(userId).length);
+        assertEquals(0, other.getBookIds(userId).length);
+
+        assertTrue(shelfService.add(userId, 1));
+        assertTrue(other.add(userId, 2));
+        assertTrue(shelfService.add(userId, 3));
+
+        assertArrayEquals(new int[]{1, 2, 3}, otherInstance(10).getBookIds(userId));
+        assertArrayEquals(new int[]{1, 2, 3}, shelfService.getBookIds(userId));
+        assertEquals(3, storedCount(userId));
+    }
+
+    @Test
+    void evictedShelvesAreReloadedOnTheNextMiss() {
+        long userId = 1003;
+        ShelfService small = otherInstance(1);
+        assertTrue(small.add(userId, 4));
+        // Touching another user evicts the first shelf
+        assertEquals(0, small.getBookIds(1004).length);
+
+        assertTrue(shelfService.add(userId, 5));
+
+        Map<Integer, Boolean> contains = small.contains(userId, List.of(4, 5, 6));
+        assertEquals(Map.of(4, true, 5, true, 6, false), contains);
+    }
+
+    @Test
+    void fullShelvesRejectNewBooksWithoutWriting() {
+        long userId = 1005;
+        for (int bookId = 1; bookId <= 3; bookId++) {
+            assertTrue(shelfService.add(userId, bookId));
+        }
+        assertThrows(IllegalStateException.class, () -> shelfService.add(userId, 4));
+        assertFalse(shelfService.add(userId, 3));
+        assertEquals(3, storedCount(userId));
+    }
+
+    @Test
+    void readsPickUpWritesAnnouncedByAnotherInstance() {
+        long userId = 1006;
+        ShelfService other = otherInstance(10);
+        assertEquals(0, shelfService.getBookIds(userId).length);
+
+        assertTrue(other.add(userId, 8));
+        assertArrayEquals(new int[]{8}, shelfService.getBookIds(userId));
+    }
+
+    @Test
+    void aRefreshDropsEveryCachedShelf() {
+        long userId = 1007;
+        ShelfService silent = otherInstance(10);
+        ReflectionTestUtils.setField(silent, "eventPublisher", (ApplicationEventPublisher) event -> {
+        });
+        assertEquals(0, shelfService.getBookIds(userId).length);
+
+        // The announcement was lost, so this instance keeps its stale copy until a refresh
+        assertTrue(silent.add(userId, 2));
+        assertEquals(0, shelfService.getBookIds(userId).length);
+        shelfService.onCatalogRefresh(new CatalogRefreshEvent("test"));
+        assertArrayEquals(new int[]{2}, shelfService.getBookIds(userId));
+    }
+
+    @Test
+    void unknownUsernamesAreNotCached() {
+        assertNull(shelfService.resolveUserId("shelf-latecomer"));
+        User user = userRepository.save(new User("shelf-latecomer", "secret"));
+        assertEquals(user.getId(), shelfService.resolveUserId("shelf-latecomer"));
+    }
+
+    private int storedCount(long userId) {
+        return shelfRepository.findById(userId).orElseThrow().getBookCount();
+    }
+
+    private ShelfService otherInstance(int maxCachedUsers) {
+        ShelfService other = new ShelfService();
+        ReflectionTestUtils.setField(other, "maxBooks", 3);
+        ReflectionTestUtils.setField(other, "maxCachedUsers", maxCachedUsers);
+        ReflectionTestUtils.setField(other, "shelfRepository", shelfRepository);
+        ReflectionTestUtils.setField(other, "userRepository", userRepository);
+        ReflectionTestUtils.setField(other, "jdbcTemplate", jdbcTemplate);
+        // Stands in for the invalidation bus delivering this instance's writes to the shared one
+        ReflectionTestUtils.setField(other, "eventPublisher", (ApplicationEventPublisher) event -> {
+            if (event instanceof ShelfChangeEvent change) {
+                shelfService.onShelfChange(new ShelfChangeEvent(change.getUserId(), "other"));
+            }
+        });
+        return other;
+    }
+}
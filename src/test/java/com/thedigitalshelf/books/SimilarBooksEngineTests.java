@@ -0,0 +1,224 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.dto.BookBatchResponse;
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.recommendation.SimilarBooksEngine;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimilarBooksEngineTests {
+
+    private static final int NEIGHBORS = 3;
+    private static final String[] WORDS = {
+            "dragon", "castle", "wizard", "ocean", "voyage", "murder", "detective", "garden", "winter", "empire",
+            "rebellion", "starship", "planet", "robot", "memory", "family", "secret", "letters", "river", "mountain",
+            "kingdom", "poison", "island", "desert", "harbor", "violin", "painter", "orchard", "storm", "lantern"};
+    private static final String[] CATEGORIES = {"Fantasy", "Mystery", "Science Fiction", "Romance", "History"};
+    private static final String[] AUTHORS = {"Ann Lee", "Bo Park", "Cy Moss", "Di Ruiz", "Ed Holt", "Fay Wu"};
+
+    private final Random random = new Random(7);
+    private final Map<Integer, Books> catalog = new LinkedHashMap<>();
+    private final SimilarBooksEngine engine = new SimilarBooksEngine();
+    // Document frequencies and count as of the last full build; incremental updates keep using them
+    private Map<String, Integer> builtFrequency;
+    private int builtDocuments;
+
+    @BeforeEach
+    void setUp() {
+        for (int id = 1; id <= 150; id++) {
+            catalog.put(id, randomBook(id));
+        }
+        BookService books = new BookService() {
+            @Override
+            public List<Books> getAllBooks() {
+                return new ArrayList<>(catalog.values());
+            }
+
+            @Override
+            public BookBatchResponse getBooksByIds(List<Integer> ids) {
+                List<Books> found = new ArrayList<>();
+                List<Integer> missing = new ArrayList<>();
+                ids.forEach(id -> {
+                    if (catalog.containsKey(id)) {
+                        found.add(catalog.get(id));
+                    } else {
+                        missing.add(id);
+                    }
+                });
+                return new BookBatchResponse(found, missing);
+            }
+        };
+        ReflectionTestUtils.setField(engine, "neighborCount", NEIGHBORS);
+        ReflectionTestUtils.setField(engine, "parallelism", 2);
+        ReflectionTestUtils.setField(engine, "rebuildIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(engine, "bookService", books);
+        ReflectionTestUtils.invokeMethod(engine, "start");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(engine, "stop");
+    }
+
+    @Test
+    void rebuildFindsTheBruteForceNeighbours() {
+        rebuild();
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    void reindexKeepsNeighboursInLineWithBruteForce() {
+        rebuild();
+        for (int i = 0; i < 40; i++) {
+            int id = 1 + random.nextInt(150);
+            catalog.put(id, randomBook(id));
+            reindex(id);
+        }
+        // New books, one of them with words the last build never saw
+        for (int id = 151; id <= 160; id++) {
+            catalog.put(id, randomBook(id));
+            reindex(id);
+        }
+        Books unseen = book(161, "Quasar nebula", "Quasar nebula cartography", "Astronomy", "Gus Yoon");
+        catalog.put(161, unseen);
+        reindex(161);
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    void removeKeepsNeighboursInLineWithBruteForce() {
+        rebuild();
+        for (int i = 0; i < 30; i++) {
+            int id = 1 + random.nextInt(150);
+            catalog.remove(id);
+            ReflectionTestUtils.invokeMethod(engine, "remove", id);
+        }
+        assertMatchesBruteForce();
+        catalog.keySet().forEach(id -> assertTrue(engine.getSimilarIds(id, NEIGHBORS).stream().allMatch(catalog::containsKey)));
+    }
+
+    @Test
+    void changesThatLeaveTheTextAloneAreSkipped() {
+        rebuild();
+        Object index = ReflectionTestUtils.getField(engine, "index");
+        int row = (Integer) ((Map<?, ?>) ReflectionTestUtils.getField(index, "rowOf")).get(5);
+        Object vector = ((Object[]) ReflectionTestUtils.getField(index, "vectors"))[row];
+        int[] before = engine.getSimilarIds(5, NEIGHBORS).stream().mapToInt(Integer::intValue).toArray();
+
+        Books book = catalog.get(5);
+        book.setPrice(book.getPrice() + 1);
+        book.setFeatured(true);
+        reindex(5);
+
+        assertSame(vector, ((Object[]) ReflectionTestUtils.getField(index, "vectors"))[row]);
+        assertArrayEquals(before, engine.getSimilarIds(5, NEIGHBORS).stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private void rebuild() {
+        engine.rebuild();
+        builtFrequency = new HashMap<>();
+        for (Books book : catalog.values()) {
+            termCounts(book).keySet().forEach(term -> builtFrequency.merge(term, 1, Integer::sum));
+        }
+        builtDocuments = catalog.size();
+    }
+
+    private void reindex(int id) {
+        ReflectionTestUtils.invokeMethod(engine, "reindex", catalog.get(id));
+        // Terms first seen after the build count as appearing in one document
+        termCounts(catalog.get(id)).keySet().forEach(term -> builtFrequency.putIfAbsent(term, 1));
+    }
+
+    // Every returned neighbour scores as well as the brute-force top list, position by position
+    private void assertMatchesBruteForce() {
+        Map<Integer, Map<String, Double>> vectors = new HashMap<>();
+        catalog.forEach((id, book) -> vectors.put(id, vector(book)));
+        for (int id : catalog.keySet()) {
+            List<Double> expected = new ArrayList<>();
+            Map<Integer, Double> scores = new HashMap<>();
+            for (int other : catalog.keySet()) {
+                double score = dot(vectors.get(id), vectors.get(other));
+                if (other != id && score > 1e-6) {
+                    scores.put(other, score);
+                    expected.add(score);
+                }
+            }
+            expected.sort(Comparator.reverseOrder());
+            expected = expected.subList(0, Math.min(NEIGHBORS, expected.size()));
+
+            List<Integer> actual = engine.getSimilarIds(id, NEIGHBORS);
+            assertEquals(expected.size(), actual.size(), "neighbours of " + id);
+            for (int i = 0; i < actual.size(); i++) {
+                double score = scores.getOrDefault(actual.get(i), 0.0);
+                assertEquals(expected.get(i), score, 1e-4, "neighbour " + i + " of " + id);
+            }
+        }
+    }
+
+    private Map<String, Double> vector(Books book) {
+        Map<String, Double> weights = new HashMap<>();
+        double norm = 0;
+        for (Map.Entry<String, Integer> term : termCounts(book).entrySet()) {
+            double idf = 1 + Math.log((1.0 + builtDocuments) / (1.0 + builtFrequency.get(term.getKey())));
+            double weight = (1 + Math.log(term.getValue())) * idf;
+            weights.put(term.getKey(), weight);
+            norm += weight * weight;
+        }
+        double scale = 1 / Math.sqrt(norm);
+        weights.replaceAll((term, weight) -> weight * scale);
+        return weights;
+    }
+
+    private static double dot(Map<String, Double> a, Map<String, Double> b) {
+        double sum = 0;
+        for (Map.Entry<String, Double> term : a.entrySet()) {
+            sum += term.getValue() * b.getOrDefault(term.getKey(), 0.0);
+        }
+        return sum;
+    }
+
+    private static Map<String, Integer> termCounts(Books book) {
+        List<String> terms = ReflectionTestUtils.invokeMethod(SimilarBooksEngine.class, "terms", book);
+        Map<String, Integer> counts = new HashMap<>();
+        terms.forEach(term -> counts.merge(term, 1, Integer::sum));
+        return counts;
+    }
+
+    private Books randomBook(int id) {
+        return book(id, words(2), words(6), CATEGORIES[random.nextInt(CATEGORIES.length)], AUTHORS[random.nextInt(AUTHORS.length)]);
+    }
+
+    private String words(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    private static Books book(int id, String title, String description, String category, String author) {
+        Books book = new Books();
+        book.setId(id);
+        book.setTitle(title);
+        book.setDescription(description);
+        book.setCategory(category);
+        book.setAuthor(author);
+        return book;
+    }
+}
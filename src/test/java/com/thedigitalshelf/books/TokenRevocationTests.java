@@ -0,0 +1,152 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.entity.Books;
+import com.thedigitalshelf.books.entity.RevokedToken;
+import com.thedigitalshelf.books.entity.TokenCutoff;
+import com.thedigitalshelf.books.repository.RevokedTokenRepository;
+import com.thedigitalshelf.books.repository.TokenCutoffRepository;
+import com.thedigitalshelf.books.security.JwtUtil;
+import com.thedigitalshelf.books.security.TokenRevocationService;
+import com.thedigitalshelf.books.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:revocation;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class TokenRevocationTests {
+
+    private static final String PASSWORD = "secret-password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private TokenCutoffRepository tokenCutoffRepository;
+
+    private int bookId;
+
+    @BeforeEach
+    void setUp() {
+        Books book = new Books();
+        book.setTitle("Members Only");
+        book.setAuthor("Anonymous");
+        book.setCategory("Private");
+        book.setFeatured(false);
+        bookId = bookService.saveBook(book).getId();
+    }
+
+    @Test
+    void logoutRevokesOnlyThatToken() throws Exception {
+        String first = register("logout-one");
+        String second = login("logout-one");
+        assertEquals(200, probe(first));
+
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer " + first))
+                .andExpect(status().isNoContent());
+        assertNotEquals(200, probe(first));
+        assertEquals(200, probe(second));
+    }
+
+    @Test
+    void logoutAllLetsTheUserLogInAgainStraightAway() throws Exception {
+        String first = register("logout-all");
+        String second = login("logout-all");
+
+        mockMvc.perform(post("/api/auth/logout-all").header("Authorization", "Bearer " + first))
+                .andExpect(status().isNoContent());
+        assertNotEquals(200, probe(first));
+        assertNotEquals(200, probe(second));
+
+        // Usually within the same second as the logout, which whole-second cutoffs used to reject
+        String again = login("logout-all");
+        assertEquals(200, probe(again));
+    }
+
+    @Test
+    void revocationsFromOtherInstancesApplyAfterARefresh() throws Exception {
+        String single = register("elsewhere-one");
+        String everywhere = register("elsewhere-all");
+
+        // As written by another instance sharing the database
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.DAYS);
+        revokedTokenRepository.save(new RevokedToken(jwtUtil.parseClaims(single).getId(), expiresAt));
+        tokenCutoffRepository.save(new TokenCutoff("elsewhere-all", Instant.now(), expiresAt));
+        assertEquals(200, probe(single));
+
+        revocationService.refresh();
+        assertNotEquals(200, probe(single));
+        assertNotEquals(200, probe(everywhere));
+        assertEquals(200, probe(login("elsewhere-all")));
+    }
+
+    @Test
+    void refreshOnlyFetchesRowsWrittenSinceTheLastOne() throws Exception {
+        String token = register("elsewhere-late");
+        revocationService.refresh();
+
+        // Written long before the newest row this instance has seen, so a refresh no longer looks at it
+        RevokedToken old = new RevokedToken(jwtUtil.parseClaims(token).getId(), Instant.now().plus(1, ChronoUnit.DAYS));
+        old.setCreatedAt(Instant.now().minus(1, ChronoUnit.HOURS));
+        revokedTokenRepository.save(old);
+        revocationService.refresh();
+        assertEquals(200, probe(token));
+
+        old.setCreatedAt(Instant.now());
+        revokedTokenRepository.save(old);
+        revocationService.refresh();
+        assertNotEquals(200, probe(token));
+    }
+
+    private String register(String username) throws Exception {
+        return token(mockMvc.perform(post("/api/auth/register").contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials(username)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private String login(String username) throws Exception {
+        return token(mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials(username)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private int probe(String token) throws Exception {
+        return mockMvc.perform(get("/api/books/" + bookId).header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private static String credentials(String username) {
+        return "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private static String token(String response) {
+        return response.replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+    }
+}
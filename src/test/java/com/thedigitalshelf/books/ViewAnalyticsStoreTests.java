@@ -0,0 +1,145 @@
+package com.thedigitalshelf.books;
+
+import com.thedigitalshelf.books.analytics.ViewAnalyticsStore;
+import com.thedigitalshelf.books.analytics.ViewGranularity;
+import com.thedigitalshelf.books.dto.ViewHistoryPoint;
+import com.thedigitalshelf.books.event.CatalogChangeEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:analytics;DB_CLOSE_DELAY=-1",
+        "books.analytics.instance-id=node-a"
+})
+class ViewAnalyticsStoreTests {
+
+    @Autowired
+    private ViewAnalyticsStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void lateViewsAreRolledUpByTheNextFlush() {
+        int bookId = 501;
+        // Its minute was rolled up before the view arrived
+        long late = System.currentTimeMillis() - Duration.ofMinutes(5).toMillis();
+        for (int i = 0; i < 3; i++) {
+            store.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, bookId, late, null));
+        }
+
+        store.flush();
+        assertEquals(3, rolledUp(bookId, ViewGranularity.HOUR));
+        assertEquals(3, rolledUp(bookId, ViewGranularity.DAY));
+        store.flush();
+        assertEquals(3, rolledUp(bookId, ViewGranularity.HOUR));
+    }
+
+    @Test
+    void viewsRecordedDuringFlushesAreNotLost() throws InterruptedException {
+        int bookId = 502;
+        long now = System.currentTimeMillis();
+        long late = now - Duration.ofMinutes(3).toMillis();
+        AtomicBoolean recording = new AtomicBoolean(true);
+        Thread flusher = Thread.ofPlatform().start(() -> {
+            while (recording.get()) {
+                store.flush();
+            }
+        });
+        List<Thread> viewers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            viewers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    store.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, bookId, i % 2 == 0 ? late : now, null));
+                }
+            }));
+        }
+        for (Thread viewer : viewers) {
+            viewer.join();
+        }
+        recording.set(false);
+        flusher.join();
+        store.flush();
+
+        long total = store.getHistory(bookId, ViewGranularity.HOUR, Instant.ofEpochMilli(now).minus(Duration.ofHours(2)), Instant.now())
+                .stream().mapToLong(ViewHistoryPoint::getViews).sum();
+        assertEquals(2000, total);
+    }
+
+    @Test
+    void checkpointsAreKeptPerInstance() {
+        jdbcTemplate.update("INSERT INTO view_rollup_checkpoints (instance_id, last_flushed_minute) VALUES ('node-b', 42)");
+        store.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, 503,
+                System.currentTimeMillis() - Duration.ofMinutes(5).toMillis(), null));
+        store.flush();
+
+        assertEquals(42, jdbcTemplate.queryForObject(
+                "SELECT last_flushed_minute FROM view_rollup_checkpoints WHERE instance_id = 'node-b'", Long.class));
+        long mine = jdbcTemplate.queryForObject(
+                "SELECT last_flushed_minute FROM view_rollup_checkpoints WHERE instance_id = 'node-a'", Long.class);
+        assertTrue(mine >= System.currentTimeMillis() / 60_000 - 2, "checkpoint " + mine);
+    }
+
+    @Test
+    void recordingDoesNotWaitForAFlushToPersist() throws Exception {
+        int bookId = 504;
+        long earlier = System.currentTimeMillis() - Duration.ofMinutes(2).toMillis();
+        store.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, bookId, earlier, null));
+
+        // A history read in progress keeps the flush waiting inside its persist step
+        ReadWriteLock persistLock = (ReadWriteLock) ReflectionTestUtils.getField(store, "persistLock");
+        persistLock.readLock().lock();
+        Thread flusher;
+        try {
+            flusher = Thread.ofPlatform().start(store::flush);
+            Thread.sleep(200);
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+                for (int i = 0; i < 100; i++) {
+                    store.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, bookId, earlier, null));
+                }
+            });
+        } finally {
+            persistLock.readLock().unlock();
+        }
+        flusher.join();
+        store.flush();
+        assertEquals(101, rolledUp(bookId, ViewGranularity.HOUR));
+    }
+
+    @Test
+    void idleBooksAreDroppedAfterTheirViewsAreRolledUp() {
+        int bookId = 505;
+        long now = System.currentTimeMillis() / 60_000;
+        store.flush();
+        // Pretend the last rollup was long ago so a view older than the ring is still held in memory
+        ReflectionTestUtils.setField(store, "lastFlushedMinute", now - 500);
+        store.onCatalogChange(new CatalogChangeEvent(CatalogChangeEvent.Type.VIEWED, bookId, (now - 400) * 60_000, null));
+        Map<?, ?> series = (Map<?, ?>) ReflectionTestUtils.getField(store, "series");
+        assertTrue(series.containsKey(bookId));
+
+        store.flush();
+        assertFalse(series.containsKey(bookId));
+        assertEquals(1, rolledUp(bookId, ViewGranularity.DAY));
+    }
+
+    private long rolledUp(int bookId, ViewGranularity granularity) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(views), 0) FROM book_view_rollups WHERE book_id = ? AND granularity = ?",
+                Long.class, bookId, granularity.name());
+    }
+}